@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cell storage that holds the text of the cells as UTF-8 in a {@link CellTextArena} and everything else in primitive
+ * arrays.  Lines are decoded into the scratch buffer of the writer as they are written, so rendering creates no
+ * strings.  Replaced cells are not reclaimed.
+ */
+class ArenaCellStore implements CellStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_LINE_COUNT = 0xFFFF;
+    private static final int MAX_FILL_EFFECT_ID = 0xFFFF;
+    private static final TextGrid.CellText[] NO_LINES = {};
+
+    private final CellTextArena arena;
+    // effect id 0 is no effect
+    private TextEffect[] effects = new TextEffect[16];
+    private int effectCount = 1;
+    private final Map<TextEffect, Integer> effectIds = new HashMap<>();
+    // the first line of each cell and its fill effect id in the high 16 bits and line count in the low 16 bits
+    private int[] lineStarts = new int[INITIAL_CAPACITY];
+    private int[] attributes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    // the arena position, UTF-8 length, effect id and span range of each line
+    private long[] textPositions = new long[INITIAL_CAPACITY];
+    private int[] textLengths = new int[INITIAL_CAPACITY];
+    private int[] lineEffectIds = new int[INITIAL_CAPACITY];
+    private int[] spanStarts = new int[INITIAL_CAPACITY];
+    private int[] spanEnds = new int[INITIAL_CAPACITY];
+    private int lineCount = 0;
+    // (offset, length, effect id) triples of the styled runs of all the lines
+    private int[] spans = new int[INITIAL_CAPACITY];
+    private int spanLength = 0;
+    private final NumberCells numbers = new NumberCells();
+
+    ArenaCellStore(CellTextArena arena) {
+        this.arena = arena;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(TextGrid.Cell cell) {
+        set(size, cell);
+    }
+
+    @Override
+    public void set(int index, TextGrid.Cell cell) {
+        boolean isNumber = numbers.set(index, cell);
+        TextGrid.CellText[] textLines = isNumber ? NO_LINES : cell.getTextLines();
+        if (textLines.length > MAX_LINE_COUNT) {
+            throw new IllegalArgumentException(String.format("A cell can have at most %d lines.  Got %d lines.",
+                MAX_LINE_COUNT, textLines.length));
+        }
+        int fillEffectId = getEffectId(cell.getFillEffect());
+        if (fillEffectId > MAX_FILL_EFFECT_ID) {
+            throw new IllegalArgumentException(String.format("A grid can have at most %d distinct effects.",
+                MAX_FILL_EFFECT_ID));
+        }
+        if (index >= lineStarts.length) {
+            int capacity = Math.max(index + 1, lineStarts.length * 2);
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            attributes = Arrays.copyOf(attributes, capacity);
+        }
+        lineStarts[index] = lineCount;
+        attributes[index] = fillEffectId << 16 | (isNumber ? 1 : textLines.length);
+        for (TextGrid.CellText textLine : textLines) {
+            addLine(textLine);
+        }
+        size = Math.max(size, index + 1);
+    }
+
+    @Override
+    public int getLineCount(int index) {
+        return index < size ? attributes[index] & MAX_LINE_COUNT : 0;
+    }
+
+    @Override
+    public TextGrid.CellText getLine(int index, int line) {
+        if (numbers.isNumber(index)) {
+            return getCell(index).getTextLines()[line];
+        }
+        line += lineStarts[index];
+        StringBuilder text = new StringBuilder(textLengths[line]);
+        arena.get(textPositions[line], textLengths[line], text);
+        int[] lineSpans = Arrays.copyOfRange(spans, spanStarts[line], spanEnds[line]);
+        List<TextEffect> spanEffects = new ArrayList<>();
+        for (int i = 0; i < lineSpans.length; i += 3) {
+            TextEffect spanEffect = effects[lineSpans[i + 2]];
+            int spanEffectIndex = spanEffects.indexOf(spanEffect);
+            if (spanEffectIndex < 0) {
+                spanEffectIndex = spanEffects.size();
+                spanEffects.add(spanEffect);
+            }
+            lineSpans[i + 2] = spanEffectIndex;
+        }
+        return new TextGrid.CellText(text.toString(), effects[lineEffectIds[line]], lineSpans,
+            spanEffects.toArray(new TextEffect[0]));
+    }
+
+    @Override
+    public boolean holdsCellText() {
+        return false;
+    }
+
+    @Override
+    public void checkReadable() {
+        arena.checkOpen();
+    }
+
+    @Override
+    public TextEffect getFillEffect(int index) {
+        return index < size ? effects[attributes[index] >>> 16] : null;
+    }
+
+    @Override
+    public CharSequence getText(int index, int line, StringBuilder buffer) {
+        line += lineStarts[index];
+        buffer.setLength(0);
+        arena.get(textPositions[line], textLengths[line], buffer);
+        return buffer;
+    }
+
+    @Override
+    public void writeText(int index, int line, CharSequence text, int start, int end, LineWriter out, int width,
+                          TextGrid.HorizontalAlign horizontalAlign, TextEffect cellFillEffect) {
+        line += lineStarts[index];
+        TextGrid.CellText.write(out, text, start, end, effects[lineEffectIds[line]], spans, spanStarts[line],
+            spanEnds[line], effects, width, horizontalAlign, cellFillEffect);
+    }
+
+    @Override
+    public int formatNumber(int index, StringBuilder buffer) {
+        return numbers.format(index, buffer);
+    }
+
+    @Override
+    public TextGrid.Cell getCell(int index) {
+        return numbers.isNumber(index) ? numbers.getCell(index, getFillEffect(index)) : CellStore.super.getCell(index);
+    }
+
+    private void addLine(TextGrid.CellText textLine) {
+        if (lineCount == textPositions.length) {
+            int capacity = lineCount * 2;
+            textPositions = Arrays.copyOf(textPositions, capacity);
+            textLengths = Arrays.copyOf(textLengths, capacity);
+            lineEffectIds = Arrays.copyOf(lineEffectIds, capacity);
+            spanStarts = Arrays.copyOf(spanStarts, capacity);
+            spanEnds = Arrays.copyOf(spanEnds, capacity);
+        }
+        String text = textLine.getRawText();
+        textPositions[lineCount] = arena.put(text);
+        textLengths[lineCount] = CellTextArena.getEncodedLength(text);
+        lineEffectIds[lineCount] = getEffectId(textLine.getEffect());
+        int[] lineSpans = textLine.getSpans();
+        TextEffect[] spanEffects = textLine.getSpanEffects();
+        if (spanLength + lineSpans.length > spans.length) {
+            spans = Arrays.copyOf(spans, Math.max(spanLength + lineSpans.length, spans.length * 2));
+        }
+        spanStarts[lineCount] = spanLength;
+        for (int i = 0; i < lineSpans.length; i += 3) {
+            spans[spanLength++] = lineSpans[i];
+            spans[spanLength++] = lineSpans[i + 1];
+            spans[spanLength++] = getEffectId(spanEffects[lineSpans[i + 2]]);
+        }
+        spanEnds[lineCount] = spanLength;
+        ++lineCount;
+    }
+
+    private int getEffectId(TextEffect effect) {
+        if (effect == null) {
+            return 0;
+        }
+        Integer id = effectIds.get(effect);
+        if (id == null) {
+            if (effectCount == effects.length) {
+                effects = Arrays.copyOf(effects, effectCount * 2);
+            }
+            id = effectCount++;
+            effects[id] = effect;
+            effectIds.put(effect, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+/**
+ * Storage for the cells of a grid, indexed in row major order.  Indexes past the end of the store are empty cells
+ * with no lines.
+ */
+interface CellStore {
+
+    int size();
+
+    void add(TextGrid.Cell cell);
+
+    /**
+     * Set the cell at the given index, adding empty cells up to the index if needed.
+     */
+    void set(int index, TextGrid.Cell cell);
+
+    int getLineCount(int index);
+
+    TextGrid.CellText getLine(int index, int line);
+
+    TextEffect getFillEffect(int index);
+
+    /**
+     * Get the text of the given line of the cell at the given index.  Stores that don't hold the text as a string
+     * decode it into the given buffer.
+     */
+    default CharSequence getText(int index, int line, StringBuilder buffer) {
+        return getLine(index, line).getRawText();
+    }
+
+    /**
+     * Write the text between start and end of the given line of the cell at the given index aligned and truncated to
+     * the given width.  The text is the text of the line got from {@link #getText(int, int, StringBuilder)}.
+     */
+    default void writeText(int index, int line, CharSequence text, int start, int end, LineWriter out, int width,
+                           TextGrid.HorizontalAlign horizontalAlign, TextEffect cellFillEffect) {
+        TextGrid.CellText cellText = getLine(index, line);
+        TextGrid.CellText.write(out, text, start, end, cellText.getEffect(), cellText.getSpans(), 0,
+            cellText.getSpans().length, cellText.getSpanEffects(), width, horizontalAlign, cellFillEffect);
+    }
+
+    /**
+     * Format the number of the cell at the given index into the given buffer, if the cell is a number cell.
+     *
+     * @return the scale of the number, or -1 if the cell is not a number cell
+     */
+    default int formatNumber(int index, StringBuilder buffer) {
+        return -1;
+    }
+
+    /**
+     * Whether the lines of this store are held as cell text, so that getting a line to key a render cache creates no
+     * objects.
+     */
+    default boolean holdsCellText() {
+        return true;
+    }
+
+    /**
+     * Check that the cells can be read, once before a render.
+     */
+    default void checkReadable() throws IllegalStateException {
+    }
+
+    default TextGrid.Cell getCell(int index) {
+        TextGrid.CellText[] textLines = new TextGrid.CellText[getLineCount(index)];
+        for (int line = 0; line < textLines.length; ++line) {
+            textLines[line] = getLine(index, line);
+        }
+        return new TextGrid.Cell(getFillEffect(index), textLines);
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An off-heap arena that holds cell text as UTF-8 in direct byte buffers.  A builder given an arena (see
+ * {@link TextGrid.Builder#setCellArena(CellTextArena)}) copies the text of its cells into the arena and keeps only
+ * primitive indexes into it, so very large grids put no cell strings on the heap.  The arena owns its memory until it
+ * is closed.  Closing the arena releases the memory right away, after which grids that use it can no longer be
+ * rendered.  An arena is safe to share between threads, but it must not be closed while a grid that uses it is being
+ * rendered; reads don't lock, and whether the arena is open is checked once when a render starts.
+ */
+public class CellTextArena implements AutoCloseable {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 24;
+    private static final int MAX_CHAR_BYTES = 3;
+    private static final BufferCleaner CLEANER = BufferCleaner.create();
+
+    private final int chunkSize;
+    // replaced, never changed, when a chunk is added so that reads need no lock; writes lock the arena
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private ByteBuffer chunk = null;
+    private long usedBytes = 0;
+    private volatile boolean closed = false;
+
+    public CellTextArena() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create an arena that allocates its memory in chunks of the given size in bytes.
+     */
+    public CellTextArena(int chunkSize) throws IllegalArgumentException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(String.format("Chunk size must be positive.  Got %d.", chunkSize));
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get the number of bytes of text held by this arena.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Get the number of bytes of off-heap memory allocated by this arena.
+     */
+    public long getAllocatedBytes() {
+        return Arrays.stream(chunks).mapToLong(ByteBuffer::capacity).sum();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Release the memory of this arena.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            ByteBuffer[] released = chunks;
+            chunks = new ByteBuffer[0];
+            chunk = null;
+            Arrays.stream(released).forEach(CLEANER::clean);
+        }
+    }
+
+    /**
+     * Copy the given text into this arena as UTF-8.
+     *
+     * @return the position of the text, which is the index of its chunk in the high 32 bits and its offset in the
+     *         chunk in the low 32 bits
+     */
+    synchronized long put(CharSequence text) {
+        checkOpen();
+        int maxLength = text.length() * MAX_CHAR_BYTES;
+        if (chunk == null || chunk.remaining() < maxLength) {
+            chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, maxLength));
+            ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[chunks.length] = chunk;
+            chunks = grown;
+        }
+        int start = chunk.position();
+        encode(text, chunk);
+        usedBytes += chunk.position() - start;
+        return (long) (chunks.length - 1) << 32 | start;
+    }
+
+    /**
+     * Decode the given number of bytes of UTF-8 text at the given position into the given buffer.  The arena must be
+     * open (see {@link #checkOpen()}).
+     */
+    void get(long position, int length, StringBuilder out) {
+        decode(chunks[(int) (position >>> 32)], (int) position, (int) position + length, out);
+    }
+
+    /**
+     * Get the number of bytes the given text takes in an arena.
+     */
+    static int getEncodedLength(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            length += c < 0x80 ? 0 : c < 0x800 ? 1 : 2;
+        }
+        return length;
+    }
+
+    private static void encode(CharSequence text, ByteBuffer chunk) {
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                chunk.put((byte) c);
+            } else if (c < 0x800) {
+                chunk.put((byte) (0xC0 | c >> 6));
+                chunk.put((byte) (0x80 | c & 0x3F));
+            } else {
+                // surrogates are kept as three byte sequences so that each char decodes on its own
+                chunk.put((byte) (0xE0 | c >> 12));
+                chunk.put((byte) (0x80 | c >> 6 & 0x3F));
+                chunk.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private static void decode(ByteBuffer buffer, int start, int end, StringBuilder out) {
+        for (int i = start; i < end; ) {
+            int b = buffer.get(i++);
+            if (b >= 0) {
+                out.append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                out.append((char) ((b & 0x1F) << 6 | buffer.get(i++) & 0x3F));
+            } else {
+                out.append((char) ((b & 0x0F) << 12 | (buffer.get(i++) & 0x3F) << 6 | buffer.get(i++) & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Check that this arena is open, before reading from it.
+     */
+    void checkOpen() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("The cell text arena is closed.");
+        }
+    }
+
+    // ***** inner class : BufferCleaner **************************************
+
+    /**
+     * Frees the memory of a direct buffer right away if the runtime allows it.  Otherwise the memory is freed when
+     * the buffer is garbage collected.
+     */
+    private static class BufferCleaner {
+        private final Object unsafe;
+        private final Method invokeCleaner;
+
+        private BufferCleaner(Object unsafe, Method invokeCleaner) {
+            this.unsafe = unsafe;
+            this.invokeCleaner = invokeCleaner;
+        }
+
+        static BufferCleaner create() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                return new BufferCleaner(field.get(null), unsafeClass.getMethod("invokeCleaner", ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new BufferCleaner(null, null);
+            }
+        }
+
+        void clean(ByteBuffer buffer) {
+            if (invokeCleaner != null) {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    // freed when collected
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cell storage that keeps no cell objects.  Each column has a dictionary of its distinct lines of text, and the cells
+ * are held in primitive arrays as runs of dictionary ids, line counts and interned fill effect ids.  Grids with many
+ * repeated values take a fraction of the memory of a list of cells.  Lines of a cell that is set to a cell with more
+ * lines are not reclaimed.
+ */
+class ColumnarCellStore implements CellStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_LINE_COUNT = 0xFFFF;
+    private static final int MAX_FILL_EFFECTS = 0xFFFF;
+
+    private final int gridWidth;
+    private final List<List<TextGrid.CellText>> dictionaries;
+    private final List<Map<TextGrid.CellText, Integer>> dictionaryIds;
+    // fill effect id 0 is no fill effect
+    private final List<TextEffect> fillEffects = new ArrayList<>();
+    private final Map<TextEffect, Integer> fillEffectIds = new HashMap<>();
+    // the first line id of each cell in lineIds
+    private int[] lineStarts = new int[INITIAL_CAPACITY];
+    // the fill effect id of each cell in the high 16 bits and its line count in the low 16 bits
+    private int[] attributes = new int[INITIAL_CAPACITY];
+    private int[] lineIds = new int[INITIAL_CAPACITY];
+    private int lineIdCount = 0;
+    private int size = 0;
+    private final NumberCells numbers = new NumberCells();
+
+    ColumnarCellStore(int gridWidth) {
+        this.gridWidth = gridWidth;
+        this.dictionaries = new ArrayList<>(gridWidth);
+        this.dictionaryIds = new ArrayList<>(gridWidth);
+        for (int col = 0; col < gridWidth; ++col) {
+            dictionaries.add(new ArrayList<>());
+            dictionaryIds.add(new HashMap<>());
+        }
+        fillEffects.add(null);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(TextGrid.Cell cell) {
+        set(size, cell);
+    }
+
+    @Override
+    public void set(int index, TextGrid.Cell cell) {
+        // the lines of a number cell are not stored, so they can't be reused
+        boolean reuseLines = index < size && !numbers.isNumber(index);
+        if (index >= lineStarts.length) {
+            int capacity = Math.max(index + 1, lineStarts.length * 2);
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            attributes = Arrays.copyOf(attributes, capacity);
+        }
+        if (numbers.set(index, cell)) {
+            attributes[index] = getFillEffectId(cell.getFillEffect()) << 16 | 1;
+            size = Math.max(size, index + 1);
+            return;
+        }
+        TextGrid.CellText[] textLines = cell.getTextLines();
+        if (textLines.length > MAX_LINE_COUNT) {
+            throw new IllegalArgumentException(String.format("A cell can have at most %d lines.  Got %d lines.",
+                MAX_LINE_COUNT, textLines.length));
+        }
+        int start = reuseLines && textLines.length <= getLineCount(index) ? lineStarts[index] : lineIdCount;
+        if (start == lineIdCount) {
+            if (lineIdCount + textLines.length > lineIds.length) {
+                lineIds = Arrays.copyOf(lineIds, Math.max(lineIdCount + textLines.length, lineIds.length * 2));
+            }
+            lineIdCount += textLines.length;
+        }
+        int col = index % gridWidth;
+        for (int line = 0; line < textLines.length; ++line) {
+            lineIds[start + line] = getLineId(col, textLines[line]);
+        }
+        lineStarts[index] = start;
+        attributes[index] = getFillEffectId(cell.getFillEffect()) << 16 | textLines.length;
+        size = Math.max(size, index + 1);
+    }
+
+    @Override
+    public int getLineCount(int index) {
+        return index < size ? attributes[index] & MAX_LINE_COUNT : 0;
+    }
+
+    @Override
+    public TextGrid.CellText getLine(int index, int line) {
+        if (numbers.isNumber(index)) {
+            return getCell(index).getTextLines()[line];
+        }
+        return dictionaries.get(index % gridWidth).get(lineIds[lineStarts[index] + line]);
+    }
+
+    @Override
+    public TextEffect getFillEffect(int index) {
+        return index < size ? fillEffects.get(attributes[index] >>> 16) : null;
+    }
+
+    @Override
+    public int formatNumber(int index, StringBuilder buffer) {
+        return numbers.format(index, buffer);
+    }
+
+    @Override
+    public TextGrid.Cell getCell(int index) {
+        return numbers.isNumber(index) ? numbers.getCell(index, getFillEffect(index)) : CellStore.super.getCell(index);
+    }
+
+    private int getLineId(int col, TextGrid.CellText cellText) {
+        Map<TextGrid.CellText, Integer> ids = dictionaryIds.get(col);
+        Integer id = ids.get(cellText);
+        if (id == null) {
+            List<TextGrid.CellText> dictionary = dictionaries.get(col);
+            id = dictionary.size();
+            dictionary.add(cellText);
+            ids.put(cellText, id);
+        }
+        return id;
+    }
+
+    private int getFillEffectId(TextEffect fillEffect) {
+        if (fillEffect == null) {
+            return 0;
+        }
+        Integer id = fillEffectIds.get(fillEffect);
+        if (id == null) {
+            if (fillEffects.size() > MAX_FILL_EFFECTS) {
+                throw new IllegalArgumentException(String.format("A grid can have at most %d distinct fill effects.",
+                    MAX_FILL_EFFECTS));
+            }
+            id = fillEffects.size();
+            fillEffects.add(fillEffect);
+            fillEffectIds.put(fillEffect, id);
+        }
+        return id;
+    }
+}
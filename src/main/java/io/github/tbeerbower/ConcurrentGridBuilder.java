@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fills the cells of a grid with a known number of rows from many threads at once.  The cells are kept in a
+ * preallocated array and set without locking, and the cell widths and heights are tracked as atomic maximums, so
+ * threads setting cells of the same column or row don't block each other.  Once every thread is done setting cells,
+ * {@link #generate()} hands the cells and their dimensions to the builder, which renders them as usual.
+ */
+public class ConcurrentGridBuilder {
+
+    private static final TextGrid.Cell EMPTY_CELL = new TextGrid.Cell();
+
+    private final TextGrid.Builder builder;
+    private final int rowCount;
+    private final int gridWidth;
+    private final AtomicReferenceArray<TextGrid.Cell> cells;
+    private final AtomicIntegerArray cellWidths;
+    private final AtomicIntegerArray cellHeights;
+
+    /**
+     * Create a concurrent builder of the given number of rows over the given builder, which provides the settings of
+     * the grid and must not have any cells yet.
+     */
+    public ConcurrentGridBuilder(TextGrid.Builder builder, int rowCount) throws IllegalArgumentException {
+        if (builder.getCellCount() != 0) {
+            throw new IllegalArgumentException(String.format("The builder must be empty.  It has %d cells.", builder.getCellCount()));
+        }
+        if (rowCount < 0) {
+            throw new IllegalArgumentException(String.format("Row count must not be negative.  Got %d.", rowCount));
+        }
+        this.builder = builder;
+        this.rowCount = rowCount;
+        this.gridWidth = builder.getGridWidth();
+        this.cells = new AtomicReferenceArray<>(rowCount * gridWidth);
+        this.cellWidths = new AtomicIntegerArray(builder.getWidthIndex(gridWidth - 1) + 1);
+        this.cellHeights = new AtomicIntegerArray(rowCount == 0 ? 0 : builder.getHeightIndex(rowCount - 1) + 1);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Set the cell at the given row and column.  Safe to call from any thread.
+     */
+    public ConcurrentGridBuilder setCell(int row, int col, TextGrid.Cell cell) throws IllegalArgumentException {
+        if (row < 0 || row >= rowCount) {
+            throw new IllegalArgumentException(String.format("Row count is %d.  Valid values for row are 0 - %d.", rowCount, rowCount - 1));
+        }
+        if (col < 0 || col >= gridWidth) {
+            throw new IllegalArgumentException(String.format("Grid width is %d.  Valid values for col are 0 - %d.", gridWidth, gridWidth - 1));
+        }
+        TextGrid.CellText[] textLines = cell.getTextLines();
+        updateMax(cellWidths, builder.getWidthIndex(col), builder.measureCellWidth(textLines));
+        updateMax(cellHeights, builder.getHeightIndex(row), builder.measureCellHeight(col, textLines));
+        cells.set(row * gridWidth + col, cell);
+        return this;
+    }
+
+    public ConcurrentGridBuilder setCell(int row, int col, TextGrid.CellText... textLines) throws IllegalArgumentException {
+        return setCell(row, col, new TextGrid.Cell(textLines));
+    }
+
+    public ConcurrentGridBuilder setCell(int row, int col, String... textLines) throws IllegalArgumentException {
+        return setCell(row, col, Arrays.stream(textLines).map(TextGrid.CellText::new).toArray(TextGrid.CellText[]::new));
+    }
+
+    /**
+     * Generate the grid from the cells set so far.  All the threads setting cells must be done, and joined by the
+     * calling thread, before the grid is generated.
+     */
+    public TextGrid generate() {
+        List<TextGrid.Cell> cellList = new ArrayList<>(cells.length());
+        for (int index = 0; index < cells.length(); ++index) {
+            TextGrid.Cell cell = cells.get(index);
+            cellList.add(cell == null ? EMPTY_CELL : cell);
+        }
+        int[] widths = new int[cellWidths.length()];
+        for (int col = 0; col < widths.length; ++col) {
+            widths[col] = cellWidths.get(col);
+        }
+        int[] heights = new int[cellHeights.length()];
+        for (int row = 0; row < heights.length; ++row) {
+            heights[row] = cellHeights.get(row);
+        }
+        builder.putMeasuredCells(cellList, widths, heights);
+        return builder.generate();
+    }
+
+    private static void updateMax(AtomicIntegerArray values, int index, int value) {
+        int current = values.get(index);
+        // most cells don't change the max, so only those that do pay for a compare and set
+        while (value > current && !values.compareAndSet(index, current, value)) {
+            current = values.get(index);
+        }
+    }
+}
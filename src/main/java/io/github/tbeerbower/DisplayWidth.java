@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+/**
+ * Terminal display widths of text.  East Asian wide and fullwidth characters and emoji take two columns, combining
+ * marks and format characters take none and everything else takes one.  ASCII is measured without a lookup.  The
+ * widths of the basic multilingual plane are packed two bits to a character into a precomputed table and the wide
+ * ranges of the supplementary planes are binary searched.
+ */
+final class DisplayWidth {
+
+    // inclusive ranges of wide characters, in order
+    private static final int[] WIDE_RANGES = {
+        0x1100, 0x115F, 0x231A, 0x231B, 0x2329, 0x232A, 0x23E9, 0x23EC, 0x23F0, 0x23F0, 0x23F3, 0x23F3,
+        0x25FD, 0x25FE, 0x2614, 0x2615, 0x2648, 0x2653, 0x267F, 0x267F, 0x2693, 0x2693, 0x26A1, 0x26A1,
+        0x26AA, 0x26AB, 0x26BD, 0x26BE, 0x26C4, 0x26C5, 0x26CE, 0x26CE, 0x26D4, 0x26D4, 0x26EA, 0x26EA,
+        0x26F2, 0x26F3, 0x26F5, 0x26F5, 0x26FA, 0x26FA, 0x26FD, 0x26FD, 0x2705, 0x2705, 0x270A, 0x270B,
+        0x2728, 0x2728, 0x274C, 0x274C, 0x274E, 0x274E, 0x2753, 0x2755, 0x2757, 0x2757, 0x2795, 0x2797,
+        0x27B0, 0x27B0, 0x27BF, 0x27BF, 0x2B1B, 0x2B1C, 0x2B50, 0x2B50, 0x2B55, 0x2B55, 0x2E80, 0x303E,
+        0x3041, 0x33FF, 0x3400, 0x4DBF, 0x4E00, 0x9FFF, 0xA000, 0xA4CF, 0xA960, 0xA97F, 0xAC00, 0xD7A3,
+        0xF900, 0xFAFF, 0xFE10, 0xFE19, 0xFE30, 0xFE6F, 0xFF00, 0xFF60, 0xFFE0, 0xFFE6,
+        0x16FE0, 0x16FE4, 0x17000, 0x18CFF, 0x1B000, 0x1B2FF, 0x1F004, 0x1F004, 0x1F0CF, 0x1F0CF,
+        0x1F18E, 0x1F18E, 0x1F191, 0x1F19A, 0x1F200, 0x1F202, 0x1F210, 0x1F23B, 0x1F240, 0x1F248,
+        0x1F250, 0x1F251, 0x1F260, 0x1F265, 0x1F300, 0x1F320, 0x1F32D, 0x1F335, 0x1F337, 0x1F37C,
+        0x1F37E, 0x1F393, 0x1F3A0, 0x1F3CA, 0x1F3CF, 0x1F3D3, 0x1F3E0, 0x1F3F0, 0x1F3F4, 0x1F3F4,
+        0x1F3F8, 0x1F43E, 0x1F440, 0x1F440, 0x1F442, 0x1F4FC, 0x1F4FF, 0x1F53D, 0x1F54B, 0x1F54E,
+        0x1F550, 0x1F567, 0x1F57A, 0x1F57A, 0x1F595, 0x1F596, 0x1F5A4, 0x1F5A4, 0x1F5FB, 0x1F64F,
+        0x1F680, 0x1F6C5, 0x1F6CC, 0x1F6CC, 0x1F6D0, 0x1F6D2, 0x1F6D5, 0x1F6D7, 0x1F6EB, 0x1F6EC,
+        0x1F6F4, 0x1F6FC, 0x1F7E0, 0x1F7EB, 0x1F90C, 0x1F93A, 0x1F93C, 0x1F945, 0x1F947, 0x1F9FF,
+        0x1FA70, 0x1FAFF, 0x20000, 0x2FFFD, 0x30000, 0x3FFFD,
+    };
+    private static final int BMP_SIZE = 0x10000;
+    // the width of each character of the basic multilingual plane, four to a byte
+    private static final byte[] BMP_WIDTHS = new byte[BMP_SIZE / 4];
+
+    static {
+        for (int c = 0; c < BMP_SIZE; ++c) {
+            int width = computeWidth(c);
+            BMP_WIDTHS[c >> 2] |= width << ((c & 3) << 1);
+        }
+    }
+
+    private DisplayWidth() {
+    }
+
+    /**
+     * Get the number of columns taken by the given code point.
+     */
+    static int of(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < BMP_SIZE) {
+            return BMP_WIDTHS[codePoint >> 2] >> ((codePoint & 3) << 1) & 3;
+        }
+        return computeWidth(codePoint);
+    }
+
+    /**
+     * Get the number of columns taken by the given text.
+     */
+    static int of(CharSequence text) {
+        int length = text.length();
+        int width = 0;
+        for (int i = 0; i < length; ++i) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ++width;
+            } else {
+                int codePoint = Character.codePointAt(text, i);
+                width += of(codePoint);
+                i += Character.charCount(codePoint) - 1;
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Fit the start of the given text to the given number of columns without splitting a character.
+     *
+     * @return the number of chars of the text that fit in the high 32 bits and the number of columns they take in the
+     *         low 32 bits
+     */
+    static long fit(CharSequence text, int maxWidth) {
+        return fit(text, 0, text.length(), maxWidth);
+    }
+
+    /**
+     * Fit the text between the given start and end to the given number of columns without splitting a character.
+     *
+     * @return the index of the end of the text that fits in the high 32 bits and the number of columns it takes in
+     *         the low 32 bits
+     */
+    static long fit(CharSequence text, int start, int end, int maxWidth) {
+        int length = end;
+        int width = 0;
+        int i = start;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (width == maxWidth) {
+                    break;
+                }
+                ++width;
+                ++i;
+            } else {
+                int codePoint = Character.codePointAt(text, i);
+                int codePointWidth = of(codePoint);
+                if (width + codePointWidth > maxWidth) {
+                    break;
+                }
+                width += codePointWidth;
+                i += Character.charCount(codePoint);
+            }
+        }
+        return (long) i << 32 | width;
+    }
+
+    private static int computeWidth(int codePoint) {
+        if (codePoint < 0x80 || codePoint == 0xAD) {
+            return 1;
+        }
+        int type = Character.getType(codePoint);
+        if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT ||
+            codePoint >= 0x1160 && codePoint <= 0x11FF) {
+            return 0;
+        }
+        int low = 0;
+        int high = WIDE_RANGES.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (codePoint < WIDE_RANGES[mid * 2]) {
+                high = mid - 1;
+            } else if (codePoint > WIDE_RANGES[mid * 2 + 1]) {
+                low = mid + 1;
+            } else {
+                return 2;
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+/**
+ * A random access source of the cells of a grid, for grids too large to add to a builder.  Only the cells of the
+ * rendered viewport are requested (see
+ * {@link TextGrid.Builder#renderViewport(GridDataProvider, int, int, int, int, Appendable)}).
+ */
+public interface GridDataProvider {
+
+    int getRowCount();
+
+    int getColumnCount();
+
+    /**
+     * Get the cell at the given row and column, or null for an empty cell.
+     */
+    TextGrid.Cell getCell(int row, int col);
+
+    /**
+     * Get the width of the given column, or 0 to fit the column to the content of the rendered rows.  Fixed widths
+     * keep the columns from shifting as the viewport scrolls.
+     */
+    default int getColumnWidth(int col) {
+        return 0;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A grid layout compiled from the settings and column widths of a builder (see
+ * {@link TextGrid.Builder#compileTemplate()}), for rendering many grids of the same shape.  Each render takes the rows
+ * of cells to show and writes them against the fixed layout, copying the pre-rendered border lines instead of
+ * assembling them glyph by glyph.  A template is immutable and safe to share between threads.
+ */
+public final class GridTemplate {
+
+    private final TextGrid.Builder layout;
+    private final int[] cellWidths;
+
+    GridTemplate(TextGrid.Builder layout) {
+        this.layout = layout;
+        this.cellWidths = layout.getCellWidths();
+    }
+
+    public int getColumnCount() {
+        return cellWidths.length;
+    }
+
+    public int[] getCellWidths() {
+        return cellWidths.clone();
+    }
+
+    /**
+     * Render the given rows of cells to the given output.  Rows may have fewer cells than the template has columns.
+     */
+    public <A extends Appendable> A renderTo(Iterable<TextGrid.Cell[]> rows, A out) throws IOException, IllegalArgumentException {
+        layout.writeRows(rows.iterator(), out);
+        return out;
+    }
+
+    public String render(Iterable<TextGrid.Cell[]> rows) throws IllegalArgumentException {
+        StringBuilder out = new StringBuilder();
+        try {
+            renderTo(rows, out);
+        } catch (IOException e) {
+            // not thrown by a string builder
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public String render(TextGrid.Cell[]... rows) throws IllegalArgumentException {
+        return render(Arrays.asList(rows));
+    }
+}
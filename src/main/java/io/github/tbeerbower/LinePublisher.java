@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Publishes the lines of a grid, without line separators, to each subscriber.  Rows are only rendered as the subscriber
+ * requests lines, one row band at a time, on the thread that calls {@link Flow.Subscription#request(long)}, so a slow
+ * subscriber never holds more than a row band in memory.  Each subscriber gets its own render of the grid.
+ */
+class LinePublisher implements Flow.Publisher<CharSequence> {
+
+    private final IntSupplier layout;
+    private final Function<LineWriter.LineSink, LineWriter> writerFactory;
+    private final ObjIntConsumer<LineWriter> rowWriter;
+
+    /**
+     * @param layout        lays out the grid and returns the number of rows to render
+     * @param writerFactory creates a line writer for a subscription
+     * @param rowWriter     writes the given row to the given line writer
+     */
+    LinePublisher(IntSupplier layout, Function<LineWriter.LineSink, LineWriter> writerFactory,
+                  ObjIntConsumer<LineWriter> rowWriter) {
+        this.layout = layout;
+        this.writerFactory = writerFactory;
+        this.rowWriter = rowWriter;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharSequence> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        LineSubscription subscription;
+        try {
+            subscription = new LineSubscription(subscriber, layout.getAsInt());
+        } catch (RuntimeException e) {
+            subscription = new LineSubscription(subscriber, 0);
+            subscription.error = e;
+        }
+        subscriber.onSubscribe(subscription);
+        if (subscription.error != null) {
+            subscription.drain();
+        }
+    }
+
+    // ***** inner class : LineSubscription ***********************************
+
+    private class LineSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super CharSequence> subscriber;
+        private final int rowCount;
+        private final ArrayDeque<String> band = new ArrayDeque<>();
+        private final AtomicLong demand = new AtomicLong();
+        // the number of times the subscription was signalled while draining, to serialize the signals
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile RuntimeException error = null;
+        private LineWriter writer = null;
+        private int row = 0;
+
+        LineSubscription(Flow.Subscriber<? super CharSequence> subscriber, int rowCount) {
+            this.subscriber = subscriber;
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException(
+                    String.format("The number of lines requested must be positive but was %d.", n));
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (pending.getAndIncrement() != 0) {
+                // the draining thread picks up the new demand
+                return;
+            }
+            int missed = 1;
+            do {
+                emit();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            while (!cancelled) {
+                if (error != null) {
+                    cancelled = true;
+                    subscriber.onError(error);
+                    return;
+                }
+                if (band.isEmpty() && row == rowCount) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                if (band.isEmpty()) {
+                    try {
+                        if (writer == null) {
+                            writer = writerFactory.apply(line -> band.add(line.toString()));
+                        }
+                        rowWriter.accept(writer, row++);
+                    } catch (RuntimeException e) {
+                        cancelled = true;
+                        subscriber.onError(e);
+                        return;
+                    }
+                } else {
+                    demand.decrementAndGet();
+                    subscriber.onNext(band.poll());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Assembles output lines in a single reusable buffer.  Each completed line is handed to a {@link LineSink} which must
+ * consume it before the next line is started.
+ *
+ * By default every run of text with an effect is wrapped in its own escape sequence and reset.  When effects are
+ * tracked, the writer remembers the effect in force along the line and only writes an escape sequence where the effect
+ * of the written text actually changes.
+ */
+class LineWriter {
+
+    interface LineSink {
+        void accept(CharSequence line);
+    }
+
+    private final StringBuilder line = new StringBuilder();
+    private final LineSink sink;
+    private final boolean trackEffects;
+    // the effect of the text being written and the effect in force at the end of the line when tracking effects
+    private TextEffect effect = null;
+    private TextEffect lineEffect = null;
+    // scratch space for text that is decoded while it is written, like the text of a cell text arena
+    private final StringBuilder textBuffer = new StringBuilder();
+    // scratch space for the wrapped lines of the cells of the row being written
+    private TextWrap.Lines[] wrappedLines = new TextWrap.Lines[0];
+    private long lineCount = 0;
+    private long outputSize = 0;
+    private long escapeCount = 0;
+
+    LineWriter(LineSink sink) {
+        this(sink, false);
+    }
+
+    LineWriter(LineSink sink, boolean trackEffects) {
+        this.sink = sink;
+        this.trackEffects = trackEffects;
+    }
+
+    LineWriter beginEffect(TextEffect effect) {
+        if (trackEffects) {
+            this.effect = effect;
+        } else if (effect != null) {
+            effect(effect, false);
+        }
+        return this;
+    }
+
+    LineWriter endEffect(TextEffect effect) {
+        if (trackEffects) {
+            this.effect = null;
+        } else if (effect != null) {
+            effect(null, false);
+        }
+        return this;
+    }
+
+    LineWriter append(char c) {
+        updateEffect();
+        write(c);
+        return this;
+    }
+
+    LineWriter append(CharSequence text, int start, int end) {
+        if (start < end) {
+            updateEffect();
+            write(text, start, end);
+        }
+        return this;
+    }
+
+    LineWriter repeat(char c, int count) {
+        if (count > 0) {
+            updateEffect();
+            write(c, count);
+        }
+        return this;
+    }
+
+    LineWriter append(TextEffect effect, char c) {
+        return beginEffect(effect).append(c).endEffect(effect);
+    }
+
+    LineWriter repeat(TextEffect effect, char c, int count) {
+        return count > 0 ? beginEffect(effect).repeat(c, count).endEffect(effect) : this;
+    }
+
+    /**
+     * Write the given border glyph the given number of times with the given effect.
+     */
+    LineWriter glyph(TextEffect effect, TextGrid.Builder.BorderCharSet borderCharSet, int index, int count) {
+        if (count > 0) {
+            beginEffect(effect);
+            updateEffect();
+            writeGlyph(borderCharSet, index, count);
+            endEffect(effect);
+        }
+        return this;
+    }
+
+    /**
+     * Write the given cached fragment verbatim.  The fragment was rendered by a writer that doesn't track effects, so
+     * it must not be written to a writer that does.
+     */
+    LineWriter append(RenderCache.Fragment fragment) {
+        escapeCount += fragment.getEscapeCount();
+        writeFragment(fragment);
+        return this;
+    }
+
+    /**
+     * Get an empty scratch buffer for text that is about to be written to this writer.
+     */
+    StringBuilder getTextBuffer() {
+        textBuffer.setLength(0);
+        return textBuffer;
+    }
+
+    /**
+     * Clear the scratch wrapped lines of the given number of cells, before a row of cells is written.
+     */
+    void clearWrappedLines(int cellCount) {
+        if (wrappedLines.length < cellCount) {
+            int length = wrappedLines.length;
+            wrappedLines = Arrays.copyOf(wrappedLines, cellCount);
+            for (int i = length; i < cellCount; ++i) {
+                wrappedLines[i] = new TextWrap.Lines();
+            }
+        }
+        for (int i = 0; i < cellCount; ++i) {
+            wrappedLines[i].clear();
+        }
+    }
+
+    /**
+     * Get the scratch wrapped lines of the given cell of the row being written.
+     */
+    TextWrap.Lines getWrappedLines(int cell) {
+        return wrappedLines[cell];
+    }
+
+    void endLine() {
+        if (lineEffect != null) {
+            effect(null, false);
+            lineEffect = null;
+        }
+        writeLine();
+        ++lineCount;
+    }
+
+    long getLineCount() {
+        return lineCount;
+    }
+
+    long getEscapeCount() {
+        return escapeCount;
+    }
+
+    /**
+     * Get the number of chars of the lines written so far, including a line separator per line.
+     */
+    long getOutputSize() {
+        return outputSize;
+    }
+
+    // ***** output methods overridden by writers that don't write to a line buffer *****
+
+    void write(char c) {
+        line.append(c);
+    }
+
+    void write(CharSequence text, int start, int end) {
+        line.append(text, start, end);
+    }
+
+    void write(char c, int count) {
+        for (int i = 0; i < count; ++i) {
+            line.append(c);
+        }
+    }
+
+    void writeGlyph(TextGrid.Builder.BorderCharSet borderCharSet, int index, int count) {
+        write(borderCharSet.getChar(index), count);
+    }
+
+    void writeFragment(RenderCache.Fragment fragment) {
+        line.append(fragment.getText());
+    }
+
+    /**
+     * Write the escape sequence that starts the given effect, resetting the current effect first if reset is true, or
+     * the escape sequence that resets the current effect if the given effect is null.
+     */
+    void writeEffect(TextEffect effect, boolean reset) {
+        line.append(effect == null ? TextEffect.getReset() : reset ? effect.getResetPrefix() : effect.getPrefix());
+    }
+
+    void writeLine() {
+        outputSize += line.length() + 1;
+        sink.accept(line);
+        line.setLength(0);
+    }
+
+    private void updateEffect() {
+        if (trackEffects && !Objects.equals(effect, lineEffect)) {
+            effect(effect, lineEffect != null);
+            lineEffect = effect;
+        }
+    }
+
+    private void effect(TextEffect effect, boolean reset) {
+        ++escapeCount;
+        writeEffect(effect, reset);
+    }
+}
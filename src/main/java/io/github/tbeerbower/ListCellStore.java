@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cell storage that keeps the cells as they are added, in a list.
+ */
+class ListCellStore implements CellStore {
+
+    private static final TextGrid.Cell EMPTY_CELL = new TextGrid.Cell();
+
+    private final List<TextGrid.Cell> cells;
+
+    ListCellStore() {
+        this(new ArrayList<>());
+    }
+
+    /**
+     * Create a store over the given list of cells.  Null cells are empty.
+     */
+    ListCellStore(List<TextGrid.Cell> cells) {
+        this.cells = cells;
+    }
+
+    @Override
+    public int size() {
+        return cells.size();
+    }
+
+    @Override
+    public void add(TextGrid.Cell cell) {
+        cells.add(cell);
+    }
+
+    @Override
+    public void set(int index, TextGrid.Cell cell) {
+        while (cells.size() <= index) {
+            cells.add(EMPTY_CELL);
+        }
+        cells.set(index, cell);
+    }
+
+    @Override
+    public int getLineCount(int index) {
+        TextGrid.Cell cell = getCell(index);
+        return cell == null ? 0 : cell instanceof NumberCell ? 1 : cell.getTextLines().length;
+    }
+
+    @Override
+    public TextGrid.CellText getLine(int index, int line) {
+        return cells.get(index).getTextLines()[line];
+    }
+
+    @Override
+    public TextEffect getFillEffect(int index) {
+        TextGrid.Cell cell = getCell(index);
+        return cell == null ? null : cell.getFillEffect();
+    }
+
+    @Override
+    public int formatNumber(int index, StringBuilder buffer) {
+        TextGrid.Cell cell = getCell(index);
+        if (!(cell instanceof NumberCell)) {
+            return -1;
+        }
+        ((NumberCell) cell).format(buffer);
+        return ((NumberCell) cell).getScale();
+    }
+
+    @Override
+    public TextGrid.Cell getCell(int index) {
+        return index < cells.size() ? cells.get(index) : null;
+    }
+}
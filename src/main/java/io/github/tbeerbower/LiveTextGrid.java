@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A text grid that stays on a terminal screen and is repainted as its cells change.  The grid keeps the lines it last
+ * painted and tracks the rows of the cells set since then.  A repaint only renders the changed rows and only writes the
+ * lines that differ, using cursor positioning escape sequences.  If the layout of the grid changes, because a column
+ * grew or rows were added, the whole grid is repainted.
+ */
+public class LiveTextGrid {
+
+    private static final String CURSOR_HOME = "\u001B[H";
+    private static final String CLEAR_SCREEN = "\u001B[2J";
+    private static final String CURSOR_POSITION_FORMAT = "\u001B[%d;1H";
+    private static final String CLEAR_LINE = "\u001B[K";
+
+    private final TextGrid.Builder builder;
+    private final BitSet dirtyRows = new BitSet();
+    private List<String[]> displayLines = null;
+    private int[] cellWidths;
+    private int[] cellHeights;
+    private int lineCount;
+
+    /**
+     * Create a live grid over the given builder.  Cells must be set through this live grid to be tracked.
+     */
+    public LiveTextGrid(TextGrid.Builder builder) {
+        this.builder = builder;
+    }
+
+    public LiveTextGrid setCell(int row, int col, TextGrid.Cell cell) throws IllegalArgumentException {
+        builder.setCell(row, col, cell);
+        dirtyRows.set(row);
+        return this;
+    }
+
+    public LiveTextGrid setCell(int row, int col, TextGrid.CellText... textLines) throws IllegalArgumentException {
+        return setCell(row, col, new TextGrid.Cell(textLines));
+    }
+
+    public LiveTextGrid setCell(int row, int col, String... textLines) throws IllegalArgumentException {
+        return setCell(row, col, Arrays.stream(textLines).map(TextGrid.CellText::new).toArray(TextGrid.CellText[]::new));
+    }
+
+    /**
+     * Write the escape sequences and lines needed to bring the terminal up to date with the cells of this grid.
+     */
+    public <A extends Appendable> A repaint(A out) throws IOException {
+        int gridHeight = builder.updateLayout();
+        if (displayLines == null || displayLines.size() != gridHeight ||
+            !Arrays.equals(cellWidths, builder.getCellWidths()) || !Arrays.equals(cellHeights, builder.getCellHeights())) {
+            return repaintAll(out, gridHeight);
+        }
+        int lineOffset = 0;
+        for (int row = 0; row < gridHeight; ++row) {
+            String[] lines = displayLines.get(row);
+            if (dirtyRows.get(row)) {
+                String[] newLines = builder.generateCellRow(row);
+                for (int i = 0; i < newLines.length; ++i) {
+                    if (!newLines[i].equals(lines[i])) {
+                        out.append(String.format(CURSOR_POSITION_FORMAT, lineOffset + i + 1)).append(newLines[i]).append(CLEAR_LINE);
+                    }
+                }
+                displayLines.set(row, newLines);
+            }
+            lineOffset += lines.length;
+        }
+        dirtyRows.clear();
+        out.append(String.format(CURSOR_POSITION_FORMAT, lineCount + 1));
+        return out;
+    }
+
+    private <A extends Appendable> A repaintAll(A out, int gridHeight) throws IOException {
+        displayLines = new ArrayList<>(gridHeight);
+        cellWidths = builder.getCellWidths();
+        cellHeights = builder.getCellHeights();
+        lineCount = 0;
+        out.append(CURSOR_HOME).append(CLEAR_SCREEN);
+        for (int row = 0; row < gridHeight; ++row) {
+            String[] lines = builder.generateCellRow(row);
+            for (String line : lines) {
+                out.append(line).append('\n');
+            }
+            displayLines.add(lines);
+            lineCount += lines.length;
+        }
+        dirtyRows.clear();
+        return out;
+    }
+}
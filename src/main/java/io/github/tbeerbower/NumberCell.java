@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+/**
+ * A cell that holds a fixed point number instead of text.  The number is formatted straight into the output buffer
+ * when it is rendered.  The text lines of the cell are only created if they are asked for.
+ */
+class NumberCell extends TextGrid.Cell {
+
+    private final long unscaled;
+    private final int scale;
+    private final char separator;
+    private volatile TextGrid.CellText[] textLines = null;
+
+    /**
+     * @param unscaled  the number times ten to the power of scale
+     * @param scale     the number of decimal places
+     * @param separator the thousands separator, or 0 for none
+     */
+    NumberCell(TextEffect fillEffect, long unscaled, int scale, char separator) {
+        super(fillEffect);
+        this.unscaled = unscaled;
+        this.scale = scale;
+        this.separator = separator;
+    }
+
+    long getUnscaled() {
+        return unscaled;
+    }
+
+    int getScale() {
+        return scale;
+    }
+
+    char getSeparator() {
+        return separator;
+    }
+
+    int getLength() {
+        return NumberText.getLength(unscaled, scale, separator);
+    }
+
+    void format(StringBuilder buffer) {
+        NumberText.format(unscaled, scale, separator, buffer);
+    }
+
+    @Override
+    public TextGrid.CellText[] getTextLines() {
+        if (textLines == null) {
+            StringBuilder text = new StringBuilder();
+            format(text);
+            textLines = new TextGrid.CellText[]{new TextGrid.CellText(text.toString(), null)};
+        }
+        return textLines;
+    }
+}
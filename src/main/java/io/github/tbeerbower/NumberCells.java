@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.Arrays;
+
+/**
+ * Primitive storage for the number cells of a cell store, indexed like the store.  The arrays are only allocated once
+ * a number cell is set.
+ */
+class NumberCells {
+
+    private long[] values = null;
+    // the scale of each number plus one, or 0 for a cell that is not a number
+    private byte[] scales = null;
+    private char[] separators = null;
+
+    /**
+     * Set the cell at the given index, which clears the number there if the cell is not a number cell.
+     *
+     * @return true if the cell is a number cell
+     */
+    boolean set(int index, TextGrid.Cell cell) {
+        if (!(cell instanceof NumberCell)) {
+            if (scales != null && index < scales.length) {
+                scales[index] = 0;
+            }
+            return false;
+        }
+        NumberCell numberCell = (NumberCell) cell;
+        if (scales == null || index >= scales.length) {
+            int capacity = Math.max(index + 1, scales == null ? 64 : scales.length * 2);
+            values = values == null ? new long[capacity] : Arrays.copyOf(values, capacity);
+            scales = scales == null ? new byte[capacity] : Arrays.copyOf(scales, capacity);
+            separators = separators == null ? new char[capacity] : Arrays.copyOf(separators, capacity);
+        }
+        values[index] = numberCell.getUnscaled();
+        scales[index] = (byte) (numberCell.getScale() + 1);
+        separators[index] = numberCell.getSeparator();
+        return true;
+    }
+
+    boolean isNumber(int index) {
+        return scales != null && index < scales.length && scales[index] != 0;
+    }
+
+    /**
+     * Format the number at the given index into the given buffer, if there is one.
+     *
+     * @return the scale of the number, or -1 if the cell at the index is not a number cell
+     */
+    int format(int index, StringBuilder buffer) {
+        if (!isNumber(index)) {
+            return -1;
+        }
+        NumberText.format(values[index], scales[index] - 1, separators[index], buffer);
+        return scales[index] - 1;
+    }
+
+    NumberCell getCell(int index, TextEffect fillEffect) {
+        return new NumberCell(fillEffect, values[index], scales[index] - 1, separators[index]);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Formats fixed point numbers, held as an unscaled long and a number of decimal places, straight into a char buffer
+ * without creating strings.
+ */
+final class NumberText {
+
+    static final int MAX_SCALE = 18;
+
+    private NumberText() {
+    }
+
+    /**
+     * Get the given value as an unscaled long with the given number of decimal places, rounded half away from zero.
+     * The value is rounded as the decimal it prints as, so 1.005 rounds to 1.01 although the nearest double is below
+     * it.
+     */
+    static long toUnscaled(double value, int scale) throws IllegalArgumentException {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException(String.format("Valid values for scale are 0 - %d.  Got %d.", MAX_SCALE, scale));
+        }
+        if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+            try {
+                return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                // too many digits for a long
+            }
+        }
+        throw new IllegalArgumentException(String.format("%s does not fit in %d decimal places.", value, scale));
+    }
+
+    /**
+     * Get the number of chars of the given number when formatted.
+     *
+     * @param separator the thousands separator, or 0 for none
+     */
+    static int getLength(long unscaled, int scale, char separator) {
+        int integerDigits = Math.max(1, getDigitCount(unscaled) - scale);
+        int length = integerDigits + (scale > 0 ? scale + 1 : 0) + (unscaled < 0 ? 1 : 0);
+        return separator == 0 ? length : length + (integerDigits - 1) / 3;
+    }
+
+    /**
+     * Get the number of chars before the decimal point of the given number when formatted.
+     */
+    static int getIntegerLength(long unscaled, int scale, char separator) {
+        return getLength(unscaled, scale, separator) - (scale > 0 ? scale + 1 : 0);
+    }
+
+    /**
+     * Append the given number to the given buffer, with a leading zero when it is less than one and the given
+     * thousands separator, or 0 for none.
+     */
+    static void format(long unscaled, int scale, char separator, StringBuilder buffer) {
+        int start = buffer.length();
+        int position = start + getLength(unscaled, scale, separator);
+        buffer.setLength(position);
+        // work with the negative value, which holds every long
+        long value = unscaled > 0 ? -unscaled : unscaled;
+        for (int i = 0; i < scale; ++i) {
+            buffer.setCharAt(--position, (char) ('0' - value % 10));
+            value /= 10;
+        }
+        if (scale > 0) {
+            buffer.setCharAt(--position, '.');
+        }
+        int digits = 0;
+        do {
+            if (separator != 0 && digits > 0 && digits % 3 == 0) {
+                buffer.setCharAt(--position, separator);
+            }
+            buffer.setCharAt(--position, (char) ('0' - value % 10));
+            value /= 10;
+            ++digits;
+        } while (value != 0);
+        if (unscaled < 0) {
+            buffer.setCharAt(--position, '-');
+        }
+    }
+
+    private static int getDigitCount(long unscaled) {
+        long value = unscaled > 0 ? -unscaled : unscaled;
+        int count = 1;
+        while (value <= -10) {
+            value /= 10;
+            ++count;
+        }
+        return count;
+    }
+}
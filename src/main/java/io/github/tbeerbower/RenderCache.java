@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of cell text rendered to a cell width, with its padding and escape sequences.  Grids that repeat the
+ * same values, like status columns or enum labels, can share a cache to skip fitting, aligning and encoding the same
+ * text over and over.  When the cache is full, entries are evicted with the CLOCK (second chance) policy: a clock hand
+ * sweeps the entries, sparing the ones used since it last passed and evicting the first one that wasn't.  Frequently
+ * used entries stay cached while a hit only sets a flag, without a lock.  A cache is safe to share between builders
+ * and threads.
+ */
+public class RenderCache {
+
+    private final int maxSize;
+    private final ConcurrentHashMap<Key, Fragment> cache = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // the clock hand, guarded by the cache lock
+    private Iterator<Map.Entry<Key, Fragment>> hand = null;
+
+    public RenderCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        hand = null;
+        hits.reset();
+        misses.reset();
+    }
+
+    Fragment get(TextGrid.CellText cellText, int width, TextGrid.HorizontalAlign horizontalAlign,
+                 TextEffect cellFillEffect) {
+        Key key = new Key(cellText, width, horizontalAlign, cellFillEffect);
+        Fragment fragment = cache.get(key);
+        if (fragment != null) {
+            hits.increment();
+            if (!fragment.referenced) {
+                fragment.referenced = true;
+            }
+            return fragment;
+        }
+        misses.increment();
+        fragment = new Fragment(cellText, width, horizontalAlign, cellFillEffect);
+        if (maxSize > 0) {
+            if (cache.size() >= maxSize) {
+                evict();
+            }
+            cache.put(key, fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * Move the clock hand until there is room for an entry, clearing the referenced flag of the entries it spares.
+     */
+    private synchronized void evict() {
+        while (cache.size() >= maxSize) {
+            if (hand == null || !hand.hasNext()) {
+                hand = cache.entrySet().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            Map.Entry<Key, Fragment> entry = hand.next();
+            if (entry.getValue().referenced) {
+                entry.getValue().referenced = false;
+            } else {
+                cache.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    // ***** inner class : Fragment *******************************************
+
+    /**
+     * Cell text rendered to a cell width, as written by a line writer that doesn't track effects.
+     */
+    static class Fragment {
+        private final String text;
+        private final byte[] utf8;
+        private final long escapeCount;
+        // set by a hit, cleared by the clock hand
+        private volatile boolean referenced = false;
+
+        Fragment(TextGrid.CellText cellText, int width, TextGrid.HorizontalAlign horizontalAlign,
+                 TextEffect cellFillEffect) {
+            StringBuilder builder = new StringBuilder();
+            LineWriter writer = cellText.write(new LineWriter(builder::append), width, horizontalAlign, cellFillEffect);
+            writer.endLine();
+            this.text = builder.toString();
+            this.utf8 = text.getBytes(StandardCharsets.UTF_8);
+            this.escapeCount = writer.getEscapeCount();
+        }
+
+        String getText() {
+            return text;
+        }
+
+        byte[] getUtf8() {
+            return utf8;
+        }
+
+        long getEscapeCount() {
+            return escapeCount;
+        }
+    }
+    // ***** inner class : Key ************************************************
+
+    private static class Key {
+        private final TextGrid.CellText cellText;
+        private final int width;
+        private final TextGrid.HorizontalAlign horizontalAlign;
+        private final TextEffect cellFillEffect;
+
+        Key(TextGrid.CellText cellText, int width, TextGrid.HorizontalAlign horizontalAlign, TextEffect cellFillEffect) {
+            this.cellText = cellText;
+            this.width = width;
+            this.horizontalAlign = horizontalAlign;
+            this.cellFillEffect = cellFillEffect;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && horizontalAlign == key.horizontalAlign &&
+                cellText.equals(key.cellText) && Objects.equals(cellFillEffect, key.cellFillEffect);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = cellText.hashCode();
+            hash = 31 * hash + width;
+            hash = 31 * hash + horizontalAlign.ordinal();
+            return 31 * hash + Objects.hashCode(cellFillEffect);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for a render of a grid.  The duration of the event is the render time.
+ */
+@Name("io.github.tbeerbower.Render")
+@Label("Text Grid Render")
+@Category("Text Grid")
+@Description("A text grid rendered by a builder or shown")
+class RenderEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(RenderEvent.class);
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Cells Measured")
+    long cells;
+
+    @Label("Measure Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long measureTime;
+
+    @Label("Layout Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long layoutTime;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Output Size")
+    long outputSize;
+
+    @Label("Escape Sequences")
+    long escapeSequences;
+
+    @Label("Cache Hits")
+    long cacheHits;
+
+    @Label("Cache Misses")
+    long cacheMisses;
+
+    static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Get a new event if the event is enabled, or null.
+     */
+    static RenderEvent startIfEnabled() {
+        RenderEvent event = new RenderEvent();
+        return event.isEnabled() ? event : null;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+/**
+ * The metrics of a single render of a grid.  Measuring covers the cells added since the previous render.  The output
+ * size is in chars, including a line separator per line, or in bytes for UTF-8 output.
+ */
+public class RenderMetrics {
+
+    private final String operation;
+    private final long cells;
+    private final long measureNanos;
+    private final long layoutNanos;
+    private final long renderNanos;
+    private final long lines;
+    private final long outputSize;
+    private final long escapeSequences;
+    private final long cacheHits;
+    private final long cacheMisses;
+
+    RenderMetrics(String operation, long cells, long measureNanos, long layoutNanos, long renderNanos, long lines,
+                  long outputSize, long escapeSequences, long cacheHits, long cacheMisses) {
+        this.operation = operation;
+        this.cells = cells;
+        this.measureNanos = measureNanos;
+        this.layoutNanos = layoutNanos;
+        this.renderNanos = renderNanos;
+        this.lines = lines;
+        this.outputSize = outputSize;
+        this.escapeSequences = escapeSequences;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+    }
+
+    /**
+     * Get the name of the rendering method, like generate, renderTo, writeTo, exportTo or show.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCells() {
+        return cells;
+    }
+
+    public long getMeasureNanos() {
+        return measureNanos;
+    }
+
+    public long getLayoutNanos() {
+        return layoutNanos;
+    }
+
+    public long getRenderNanos() {
+        return renderNanos;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getOutputSize() {
+        return outputSize;
+    }
+
+    public long getEscapeSequences() {
+        return escapeSequences;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d cells measured in %d ns, layout %d ns, render %d ns, %d lines, output size %d, " +
+                "%d escape sequences, %d cache hits, %d cache misses", operation, cells, measureNanos, layoutNanos,
+            renderNanos, lines, outputSize, escapeSequences, cacheHits, cacheMisses);
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Renders the rows of a grid on producer tasks and writes them to an output on a writer task, so that rendering
+ * overlaps with writing to a slow output.  Each producer renders every producers-th band of rows into a buffer taken
+ * from a shared pool and puts it in its own bounded queue.  The writer takes the bands from the queues in turn, which
+ * keeps them in order, appends them to the output and returns the buffers to the pool.  The tasks run on virtual
+ * threads where the runtime has them, otherwise on a pool of platform threads for the render.
+ */
+class RenderPipeline {
+
+    static final int BAND_ROWS = 16;
+    static final int QUEUE_CAPACITY = 4;
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+    private final int rowCount;
+    private final int producers;
+    private final Function<LineWriter.LineSink, LineWriter> writerFactory;
+    private final ObjIntConsumer<LineWriter> rowWriter;
+    private final RenderStats stats;
+    private final Runnable onComplete;
+
+    /**
+     * @param writerFactory creates a line writer for a producer
+     * @param rowWriter     writes the given row to the given line writer
+     * @param stats         the stats to add the counts of the producers to, or null
+     * @param onComplete    called on the writer task once all the rows are written
+     */
+    RenderPipeline(int rowCount, int producers, Function<LineWriter.LineSink, LineWriter> writerFactory,
+                   ObjIntConsumer<LineWriter> rowWriter, RenderStats stats, Runnable onComplete) {
+        this.rowCount = rowCount;
+        this.producers = producers;
+        this.writerFactory = writerFactory;
+        this.rowWriter = rowWriter;
+        this.stats = stats;
+        this.onComplete = onComplete;
+    }
+
+    <A extends Appendable> CompletableFuture<A> start(A out) {
+        CompletableFuture<A> future = new CompletableFuture<>();
+        int bands = (rowCount + BAND_ROWS - 1) / BAND_ROWS;
+        int producerCount = Math.max(1, Math.min(producers, bands));
+        List<BlockingQueue<StringBuilder>> queues = new ArrayList<>(producerCount);
+        ConcurrentLinkedQueue<StringBuilder> pool = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = newExecutor(producerCount + 1);
+        for (int producer = 0; producer < producerCount; ++producer) {
+            queues.add(new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+        }
+        for (int producer = 0; producer < producerCount; ++producer) {
+            int first = producer;
+            executor.execute(() -> produce(first, producerCount, bands, queues.get(first), pool, future));
+        }
+        executor.execute(() -> write(out, bands, queues, pool, future));
+        executor.shutdown();
+        // stop the other tasks if a task fails or the caller cancels
+        future.whenComplete((result, e) -> {
+            if (e != null) {
+                executor.shutdownNow();
+            }
+        });
+        return future;
+    }
+
+    private void produce(int firstBand, int producerCount, int bands, BlockingQueue<StringBuilder> queue,
+                         ConcurrentLinkedQueue<StringBuilder> pool, CompletableFuture<?> future) {
+        StringBuilder[] buffer = new StringBuilder[1];
+        LineWriter writer = writerFactory.apply(line -> buffer[0].append(line).append('\n'));
+        try {
+            for (int band = firstBand; band < bands && !future.isDone(); band += producerCount) {
+                buffer[0] = pool.poll();
+                if (buffer[0] == null) {
+                    buffer[0] = new StringBuilder();
+                }
+                for (int row = band * BAND_ROWS; row < Math.min((band + 1) * BAND_ROWS, rowCount); ++row) {
+                    rowWriter.accept(writer, row);
+                }
+                if (stats != null && band + producerCount >= bands) {
+                    stats.add(writer);
+                }
+                queue.put(buffer[0]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // errors too, or the writer would wait for this band forever
+            future.completeExceptionally(e);
+        }
+    }
+
+    private <A extends Appendable> void write(A out, int bands, List<BlockingQueue<StringBuilder>> queues,
+                                              ConcurrentLinkedQueue<StringBuilder> pool, CompletableFuture<A> future) {
+        try {
+            for (int band = 0; band < bands && !future.isDone(); ++band) {
+                StringBuilder buffer = queues.get(band % queues.size()).take();
+                out.append(buffer);
+                buffer.setLength(0);
+                pool.offer(buffer);
+            }
+            onComplete.run();
+            future.complete(out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // fall back to platform threads
+            }
+        }
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "text-grid-render");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Method findVirtualThreadExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
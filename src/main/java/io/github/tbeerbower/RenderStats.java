@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the counts of the line writers of a render, from any number of threads, and reports them to the render
+ * listener and Flight Recorder when the render is done.  Renders only collect stats when there is a listener or the
+ * render event is enabled.
+ */
+class RenderStats {
+
+    // Flight Recorder is in an optional module, so the event class is only touched when the module is there
+    private static final boolean FLIGHT_RECORDER = isFlightRecorderAvailable();
+
+    private final String operation;
+    private final RenderListener listener;
+    private final RenderEvent event;
+    private final RenderCache renderCache;
+    private final long startNanos;
+    private final long startCacheHits;
+    private final long startCacheMisses;
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder outputSize = new LongAdder();
+    private final LongAdder escapeSequences = new LongAdder();
+
+    private RenderStats(String operation, RenderListener listener, RenderEvent event, RenderCache renderCache) {
+        this.operation = operation;
+        this.listener = listener;
+        this.event = event;
+        this.renderCache = renderCache;
+        this.startCacheHits = renderCache == null ? 0 : renderCache.getHits();
+        this.startCacheMisses = renderCache == null ? 0 : renderCache.getMisses();
+        if (event != null) {
+            event.begin();
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Start collecting the stats of a render, or return null if nobody is interested in them.
+     */
+    static RenderStats start(String operation, RenderListener listener, RenderCache renderCache) {
+        RenderEvent event = FLIGHT_RECORDER ? RenderEvent.startIfEnabled() : null;
+        return listener == null && event == null ? null : new RenderStats(operation, listener, event, renderCache);
+    }
+
+    /**
+     * Check whether renders are measured, because there is a listener or the render event is enabled.
+     */
+    static boolean isEnabled(RenderListener listener) {
+        return listener != null || FLIGHT_RECORDER && RenderEvent.isTypeEnabled();
+    }
+
+    void add(LineWriter writer) {
+        lines.add(writer.getLineCount());
+        outputSize.add(writer.getOutputSize());
+        escapeSequences.add(writer.getEscapeCount());
+    }
+
+    void add(long lineCount, long size) {
+        lines.add(lineCount);
+        outputSize.add(size);
+    }
+
+    void complete(long cells, long measureNanos, long layoutNanos) {
+        long renderNanos = System.nanoTime() - startNanos;
+        long cacheHits = renderCache == null ? 0 : renderCache.getHits() - startCacheHits;
+        long cacheMisses = renderCache == null ? 0 : renderCache.getMisses() - startCacheMisses;
+        if (event != null) {
+            event.end();
+        }
+        if (event != null && event.shouldCommit()) {
+            event.operation = operation;
+            event.cells = cells;
+            event.measureTime = measureNanos;
+            event.layoutTime = layoutNanos;
+            event.lines = lines.sum();
+            event.outputSize = outputSize.sum();
+            event.escapeSequences = escapeSequences.sum();
+            event.cacheHits = cacheHits;
+            event.cacheMisses = cacheMisses;
+            event.commit();
+        }
+        if (listener != null) {
+            listener.renderCompleted(new RenderMetrics(operation, cells, measureNanos, layoutNanos, renderNanos,
+                lines.sum(), outputSize.sum(), escapeSequences.sum(), cacheHits, cacheMisses));
+        }
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, RenderStats.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
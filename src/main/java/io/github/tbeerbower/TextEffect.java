@@ -16,26 +16,35 @@
  */
 package io.github.tbeerbower;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 public class TextEffect {
 
-    private static final Pattern DECODE_EFFECTS_PATTERN = Pattern.compile("\\\u001B\\[([\\d;]+)m");
-    private static final Pattern DECODE_TEXT_PATTERN = Pattern.compile("\\\u001B\\[([\\d;]+)m(.*)\\\u001B\\[([\\d;]+)m");
-    private static final String ESCAPE_FORMAT = "\u001B[%sm%s\u001B[0m";
-    private static final Map<String, Code> codeMap = new HashMap<>();
+    private static final char ESCAPE = '\u001B';
+    private static final String ESCAPE_START = "\u001B[";
+    private static final String ESCAPE_RESET = "\u001B[0m";
+    private static final byte[] ESCAPE_RESET_BYTES = ESCAPE_RESET.getBytes(StandardCharsets.US_ASCII);
+    private static final Code[] CODES = Code.values();
+    private static final TextEffect NONE = new TextEffect();
+    private static final Code[] codeMap = new Code[48];
     static {
-        for (Code code : Code.values()) {
-            codeMap.put(code.getCode(), code);
+        for (Code code : CODES) {
+            codeMap[Integer.parseInt(code.getCode())] = code;
         }
     }
+    private static final int FOREGROUND_MASK = getRangeMask(Code.BLACK, Code.WHITE);
+    private static final int BACKGROUND_MASK = getRangeMask(Code.BACKGROUND_BLACK, Code.BACKGROUND_WHITE);
+    private static final Map<Integer, TextEffect> decodedEffects = new ConcurrentHashMap<>();
+
+    interface SpanConsumer {
+        void accept(int offset, int length, int mask);
+    }
 
     public enum Code {
         RESET("0"),
@@ -72,13 +81,66 @@ public class TextEffect {
     }
 
     private final Code[] codes;
+    private final int mask;
+    private final String prefix;
+    private final String resetPrefix;
+    private final byte[] prefixBytes;
+    private final byte[] resetPrefixBytes;
 
+    /**
+     * Create an effect from the given codes.  Of the foreground and of the background colours only the last one given
+     * is kept, as a terminal shows it.  The codes are then kept in the order of {@link Code} without duplicates, so
+     * effects that show the same are equal and start with the same escape sequence.
+     */
     public TextEffect(Code... codes) {
-        this.codes = codes;
+        int mask = 0;
+        for (Code code : codes) {
+            mask = addMask(mask, 1 << code.ordinal());
+        }
+        this.mask = mask;
+        this.codes = getCodes(mask);
+        StringBuilder prefix = new StringBuilder(ESCAPE_START);
+        for (int i = 0; i < this.codes.length; ++i) {
+            prefix.append(i > 0 ? ";" : "").append(this.codes[i].getCode());
+        }
+        this.prefix = prefix.append('m').toString();
+        this.resetPrefix = this.codes.length == 0 ? ESCAPE_RESET : ESCAPE_START + "0;" + this.prefix.substring(ESCAPE_START.length());
+        this.prefixBytes = this.prefix.getBytes(StandardCharsets.US_ASCII);
+        this.resetPrefixBytes = this.resetPrefix.getBytes(StandardCharsets.US_ASCII);
     }
 
     public Code[] getCodes() {
-        return codes;
+        return codes.clone();
+    }
+
+    boolean isEmpty() {
+        return codes.length == 0;
+    }
+
+    /**
+     * Get the escape sequence that starts this effect.
+     */
+    String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Get the escape sequence that resets any current effect and starts this effect.
+     */
+    String getResetPrefix() {
+        return resetPrefix;
+    }
+
+    byte[] getPrefixBytes() {
+        return prefixBytes;
+    }
+
+    byte[] getResetPrefixBytes() {
+        return resetPrefixBytes;
+    }
+
+    int getMask() {
+        return mask;
     }
 
     public TextEffect join(Code... codes) {
@@ -87,29 +149,174 @@ public class TextEffect {
     }
 
     public String apply(String text) {
-        return String.format(ESCAPE_FORMAT,
-            Arrays.stream(codes).map(Code::getCode).collect(Collectors.joining(";")),
-            text);
+        return prefix + text + ESCAPE_RESET;
+    }
+
+    /**
+     * Apply this effect to the given text, appending the result to the given output.
+     */
+    public <A extends Appendable> A apply(A out, CharSequence text) throws IOException {
+        out.append(prefix).append(text).append(ESCAPE_RESET);
+        return out;
+    }
+
+    static String getReset() {
+        return ESCAPE_RESET;
+    }
+
+    static byte[] getResetBytes() {
+        return ESCAPE_RESET_BYTES;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TextEffect && ((TextEffect) o).mask == mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return mask;
     }
 
+    /**
+     * Get the effect of all the escape sequences in the given text.
+     */
     public static TextEffect decode(String text) {
-        TextEffect textEffect = new TextEffect();
-        Matcher matcher = DECODE_EFFECTS_PATTERN.matcher(text);
-        while (matcher.find()) {
-            String[] codes = matcher.group(1).split(";");
-            // get enum codes
-            textEffect = textEffect.join(
-                Arrays.stream(codes).filter(code -> codeMap.get(code) != Code.RESET).
-                    map(code -> codeMap.get(code)).collect(Collectors.toList()).toArray(new Code[]{}));
-        }
-        return textEffect;
+        return decode(text, null);
     }
 
+    /**
+     * Get the given text with all the escape sequences removed.
+     */
     public static String decodeText(String text) {
-        Matcher matcher = DECODE_TEXT_PATTERN.matcher(text);
-        if (matcher.find()) {
-            return matcher.group(2);
+        if (!isEncoded(text)) {
+            return text;
+        }
+        StringBuilder plainText = new StringBuilder(text.length());
+        decode(text, plainText);
+        return plainText.toString();
+    }
+
+    static boolean isEncoded(String text) {
+        return text.indexOf(ESCAPE) >= 0;
+    }
+
+    /**
+     * Scan the given text once, appending the text without escape sequences to the given plain text builder (if not
+     * null) and returning the effect of all the escape sequences.  Reset and unknown codes are ignored.
+     */
+    static TextEffect decode(String text, StringBuilder plainText) {
+        return forMask(decode(text, plainText, null));
+    }
+
+    /**
+     * Scan the given text once, appending the text without escape sequences to the given plain text builder (if not
+     * null) and reporting each run of plain text that has an effect to the given span consumer (if not null).  A reset
+     * code ends the effect of the codes before it and a colour code ends the effect of the colour of the same kind
+     * before it.  Returns the mask of all the codes in the text.
+     */
+    static int decode(String text, StringBuilder plainText, SpanConsumer spans) {
+        int mask = 0;
+        int state = 0;
+        int offset = 0;
+        int spanOffset = 0;
+        int spanLength = 0;
+        int spanMask = 0;
+        int length = text.length();
+        int start = 0;
+        for (int i = text.indexOf(ESCAPE); ; i = text.indexOf(ESCAPE, i + 1)) {
+            int end = i < 0 ? length : getSequenceEnd(text, i);
+            if (end < 0) {
+                // not an SGR sequence; keep it in the plain text
+                continue;
+            }
+            int segmentEnd = i < 0 ? length : i;
+            int segmentLength = segmentEnd - start;
+            if (plainText != null) {
+                plainText.append(text, start, segmentEnd);
+            }
+            if (spans != null && segmentLength > 0) {
+                if (spanLength > 0 && state != spanMask) {
+                    spans.accept(spanOffset, spanLength, spanMask);
+                    spanLength = 0;
+                }
+                if (state != 0) {
+                    spanOffset = spanLength == 0 ? offset : spanOffset;
+                    spanLength += segmentLength;
+                    spanMask = state;
+                }
+            }
+            offset += segmentLength;
+            if (i < 0) {
+                break;
+            }
+            int code = 0;
+            for (int j = i + 2; j <= end; ++j) {
+                char c = text.charAt(j);
+                if (c >= '0' && c <= '9') {
+                    code = code * 10 + (c - '0');
+                } else {
+                    int codeMask = getMask(code);
+                    state = code == 0 ? 0 : addMask(state, codeMask);
+                    mask = addMask(mask, codeMask);
+                    code = 0;
+                }
+            }
+            start = end + 1;
+            i = end;
+        }
+        if (spans != null && spanLength > 0) {
+            spans.accept(spanOffset, spanLength, spanMask);
+        }
+        return mask;
+    }
+
+    static TextEffect forMask(int mask) {
+        return mask == 0 ? NONE : decodedEffects.computeIfAbsent(mask, TextEffect::fromMask);
+    }
+
+    /**
+     * Get the index of the 'm' that ends the SGR sequence starting at the given index, or -1 if there is none.
+     */
+    private static int getSequenceEnd(String text, int start) {
+        int length = text.length();
+        if (start + 1 >= length || text.charAt(start + 1) != '[') {
+            return -1;
+        }
+        int end = start + 2;
+        while (end < length && (text.charAt(end) >= '0' && text.charAt(end) <= '9' || text.charAt(end) == ';')) {
+            ++end;
+        }
+        return end < length && text.charAt(end) == 'm' ? end : -1;
+    }
+
+    private static int getMask(int code) {
+        Code c = code >= 0 && code < codeMap.length ? codeMap[code] : null;
+        return c == null || c == Code.RESET ? 0 : 1 << c.ordinal();
+    }
+
+    /**
+     * Add the given code mask to the given mask.  A foreground or background colour replaces the colour of the same
+     * kind in the mask, as it does on a terminal.
+     */
+    static int addMask(int mask, int codeMask) {
+        if ((codeMask & FOREGROUND_MASK) != 0) {
+            mask &= ~FOREGROUND_MASK;
+        } else if ((codeMask & BACKGROUND_MASK) != 0) {
+            mask &= ~BACKGROUND_MASK;
         }
-        return text;
+        return mask | codeMask;
+    }
+
+    private static TextEffect fromMask(int mask) {
+        return new TextEffect(getCodes(mask));
+    }
+
+    private static int getRangeMask(Code first, Code last) {
+        return (1 << last.ordinal() + 1) - (1 << first.ordinal());
+    }
+
+    private static Code[] getCodes(int mask) {
+        return Arrays.stream(CODES).filter(code -> (mask & 1 << code.ordinal()) != 0).toArray(Code[]::new);
     }
 }
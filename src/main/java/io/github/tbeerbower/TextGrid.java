@@ -16,18 +16,31 @@
  */
 package io.github.tbeerbower;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.function.Function;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static java.lang.String.format;
 import static java.util.stream.IntStream.range;
-import static java.util.stream.Stream.of;
 
 public class TextGrid {
 
@@ -45,15 +58,30 @@ public class TextGrid {
     private static final int DEFAULT_MAX_CELL_HEIGHT = 12;
 
     private final List<String[]> displayLines;
+    private final RenderListener renderListener;
 
-    private TextGrid(List<String[]> displayLines) {
+    private TextGrid(List<String[]> displayLines, RenderListener renderListener) {
         this.displayLines = displayLines;
+        this.renderListener = renderListener;
     }
 
     public void show(PrintStream out) {
+        RenderStats stats = RenderStats.start("show", renderListener, null);
         for (String[] lines : displayLines) {
             Arrays.stream(lines).forEach(out::println);
         }
+        if (stats != null) {
+            long lineCount = 0;
+            long size = 0;
+            for (String[] lines : displayLines) {
+                lineCount += lines.length;
+                for (String line : lines) {
+                    size += line.length() + 1;
+                }
+            }
+            stats.add(lineCount, size);
+            stats.complete(0, 0, 0);
+        }
     }
 
     @Override
@@ -71,8 +99,41 @@ public class TextGrid {
 
     public static class Builder {
 
-        private static final CellText[] EMPTY_CELL_TEXTS = {};
 
+        /**
+         * How the cells of a grid are held until it is rendered.
+         */
+        public enum CellStorage {
+            /** Keep the added cells as they are. */
+            LIST,
+            /**
+             * Keep a dictionary of the distinct lines of each column and hold the cells in primitive arrays of
+             * dictionary ids.  Use this for very large grids, particularly ones with repeated values.
+             */
+            COLUMNAR
+        }
+
+        /**
+         * How text wider than its cell is handled.
+         */
+        public enum WrapMode {
+            /** Truncate the text. */
+            NONE,
+            /** Wrap the text between words.  Words wider than the cell are truncated. */
+            WORDS,
+            /** Wrap the text between words and break words wider than the cell. */
+            BREAK_WORDS
+        }
+
+        /**
+         * How number cells are aligned in their column.
+         */
+        public enum NumberAlign {
+            /** Right align the numbers. */
+            RIGHT,
+            /** Line up the decimal points of the numbers, padding numbers with fewer decimal places on the right. */
+            DECIMAL
+        }
 
         public enum BorderCharSet {
             BASIC(new char[]{'+', '+', '+', '+', '+', '+', '+', '+', '+', '-', '|'}),
@@ -84,16 +145,31 @@ public class TextGrid {
             XASCII_HOR2(new char[]{0x2550, 0x2550, 0x2550, 0x2550, 0x2550, 0x2550, 0x2550, 0x2550, 0x2550, 0x2550, ' '}),
             XASCII_VERT2(new char[]{0x2551, 0x2551, 0x2551, 0x2551, 0x2551, 0x2551, 0x2551, 0x2551, 0x2551, ' ', 0x2551});
             private final char[] chars;
+            private final byte[][] utf8;
 
             BorderCharSet(char[] chars) {
                 this.chars = chars;
+                this.utf8 = new byte[chars.length][];
+                for (int i = 0; i < chars.length; ++i) {
+                    this.utf8[i] = String.valueOf(chars[i]).getBytes(StandardCharsets.UTF_8);
+                }
+            }
+
+            char getChar(int index) {
+                return chars[index];
             }
 
-            private String get(int index) {
-                return String.valueOf(chars[index]);
+            byte[] getUtf8(int index) {
+                return utf8[index];
             }
         }
 
+        // rows per thread rendered at a time when rendering in parallel
+        private static final int PARALLEL_BATCH_ROWS = 16;
+
+        private static final int HORIZONTAL_INDEX = 9;
+        private static final int VERTICAL_INDEX = 10;
+
         private static final int[] CORNER_CODES = {
                 0, 1, 0, 0, 2, 3, 2, 0,
                 0, 1, 0, 0, 0, 0, 0, 3,
@@ -105,13 +181,21 @@ public class TextGrid {
                 6, 6, 8, 0, 0, 0, 0, 8,
         };
 
-        private final List<Cell> cells = new ArrayList<>();
+        private CellStore cells = new ListCellStore();
         private VerticalAlign verticalAlign = VerticalAlign.CENTER;
         private HorizontalAlign horizontalAlign = HorizontalAlign.CENTER;
         private final boolean enableColumnAttributes;
         private final boolean enableRowAttributes;
         private final int[] cellWidths;
+        // the cell widths fitted to the column constraints and target width by the last layout
+        private int[] layoutWidths;
+        private int[] minCellWidths = null;
+        private int[] maxCellWidths = null;
+        private int[] columnWeights = null;
+        private int targetWidth = 0;
         private int[] cellHeights;
+        // the cell heights of the last layout, measured again when wrapped text is laid out in narrowed columns
+        private int[] layoutHeights;
         private int maxCellWidth = DEFAULT_MAX_CELL_WIDTH;
         private int maxCellHeight = DEFAULT_MAX_CELL_HEIGHT;
         private final int gridWidth;
@@ -119,8 +203,29 @@ public class TextGrid {
         private int verticalCellPadding = 0;
         private int horizontalCellPadding = 0;
         private boolean hasBorder = true;
+        private boolean fixedCellWidths = false;
+        private boolean trackEffects = false;
+        private int parallelism = 1;
+        // the pool the row bands are rendered in, created on first use and kept for later renders unless set
+        private ForkJoinPool renderPool = null;
+        private boolean ownsRenderPool = false;
+        private RenderCache renderCache = null;
+        private WrapMode wrapMode = WrapMode.NONE;
+        private RenderListener renderListener = null;
+        // the stats of the render in progress, if they are collected
+        private volatile RenderStats renderStats = null;
+        private long measuredCells = 0;
+        private long measureNanos = 0;
+        private long layoutNanos = 0;
         private TextEffect fillEffect = null;
         private BorderCharSet borderCharSet = BorderCharSet.BASIC;
+        private NumberAlign numberAlign = NumberAlign.RIGHT;
+        private char thousandsSeparator = 0;
+        // the longest integer part and the most decimal places of the numbers of each column, for decimal alignment
+        private int[] numberIntegerLengths = null;
+        private int[] numberScales = null;
+        // the border lines rendered by a compiled template, indexed by the isTop, isFirstRow and isLastRow bits
+        private String[] borderLines = null;
 
         public Builder(int gridWidth) {
             this(gridWidth, true);
@@ -138,12 +243,14 @@ public class TextGrid {
             this.cellWidths = new int[gridWidth];
             this.hasBorder = hasBorder;
             IntStream.range(0, gridWidth).forEach(i -> this.cellWidths[i] = MIN_CELL_WIDTH);
+            this.layoutWidths = this.cellWidths;
+            this.layoutHeights = this.cellHeights;
         }
 
         public Builder addCell(Cell cell) {
             int row = cells.size() / gridWidth;
             int col = cells.size() % gridWidth;
-            adjustCellDimensions(row, col, cell.getTextLines());
+            measureCell(row, col, cell);
             cells.add(cell);
             return this;
         }
@@ -164,17 +271,27 @@ public class TextGrid {
             return addCell(fillEffect, Arrays.stream(textLines).map(CellText::new).toArray(CellText[]::new));
         }
 
+        /**
+         * Add a number cell.  The number is kept as a primitive and formatted straight into the output, aligned as set
+         * by {@link #setNumberAlign(NumberAlign)}.
+         */
+        public Builder addCell(long value) {
+            return addCell(new NumberCell(null, value, 0, thousandsSeparator));
+        }
+
+        /**
+         * Add a number cell with the given number of decimal places, from 0 to 18.  The value is rounded half away from zero.
+         */
+        public Builder addCell(double value, int scale) throws IllegalArgumentException {
+            return addCell(new NumberCell(null, NumberText.toUnscaled(value, scale), scale, thousandsSeparator));
+        }
+
         public Builder setCell(int row, int col, Cell cell) throws IllegalArgumentException {
             if (col >= gridWidth) {
                 throw new IllegalArgumentException(String.format("Grid width is %d.  Valid values for col are 0 - %d.", gridWidth, gridWidth - 1));
             }
-            adjustCellDimensions(row, col, cell.getTextLines());
-            int index = row * gridWidth + col;
-            if (index >= cells.size()) {
-                IntStream.rangeClosed(cells.size(), index).forEach(i ->
-                    cells.add(i, new Cell(new CellText[]{})));
-            }
-            cells.set(index, cell);
+            measureCell(row, col, cell);
+            cells.set(row * gridWidth + col, cell);
             return this;
         }
 
@@ -186,6 +303,63 @@ public class TextGrid {
             return setCell(row, col, Arrays.stream(textLines).map(CellText::new).toArray(CellText[]::new));
         }
 
+        public Builder setCell(int row, int col, long value) throws IllegalArgumentException {
+            return setCell(row, col, new NumberCell(null, value, 0, thousandsSeparator));
+        }
+
+        public Builder setCell(int row, int col, double value, int scale) throws IllegalArgumentException {
+            return setCell(row, col, new NumberCell(null, NumberText.toUnscaled(value, scale), scale, thousandsSeparator));
+        }
+
+        /**
+         * Fix the cell widths of the grid.  Fixed widths are not adjusted to fit the cell content.  When column
+         * attributes are not enabled only the first width is used.
+         */
+        public Builder setCellWidths(int... cellWidths) throws IllegalArgumentException {
+            if (cellWidths.length > gridWidth) {
+                throw new IllegalArgumentException(String.format("Grid width is %d.  Got %d cell widths.", gridWidth, cellWidths.length));
+            }
+            System.arraycopy(cellWidths, 0, this.cellWidths, 0, cellWidths.length);
+            this.fixedCellWidths = true;
+            return this;
+        }
+
+        /**
+         * Fit the grid to the given total width in characters, including borders and padding, by narrowing the
+         * columns that are wider than their min widths (see {@link #setColumnConstraints(int, int, int, int)}).
+         * Columns are not widened to fill the target width.  A target width of 0 turns fitting off.
+         */
+        public Builder setTargetWidth(int targetWidth) {
+            this.targetWidth = targetWidth;
+            return this;
+        }
+
+        /**
+         * Constrain the width of the given column.  The column is kept between the min and max widths, and when the
+         * grid is narrowed to its target width, columns with larger weights keep more of their content width.  When
+         * column attributes are not enabled only the constraints of the first column are used.
+         */
+        public Builder setColumnConstraints(int col, int minWidth, int maxWidth, int weight) throws IllegalArgumentException {
+            if (col >= gridWidth) {
+                throw new IllegalArgumentException(String.format("Grid width is %d.  Valid values for col are 0 - %d.", gridWidth, gridWidth - 1));
+            }
+            if (minWidth < MIN_CELL_WIDTH || maxWidth < minWidth || weight < 0) {
+                throw new IllegalArgumentException(String.format("Invalid column constraints min %d, max %d, weight %d.", minWidth, maxWidth, weight));
+            }
+            if (minCellWidths == null) {
+                minCellWidths = new int[gridWidth];
+                maxCellWidths = new int[gridWidth];
+                columnWeights = new int[gridWidth];
+                Arrays.fill(minCellWidths, MIN_CELL_WIDTH);
+                Arrays.fill(maxCellWidths, Integer.MAX_VALUE);
+                Arrays.fill(columnWeights, 1);
+            }
+            minCellWidths[col] = minWidth;
+            maxCellWidths[col] = maxWidth;
+            columnWeights[col] = weight;
+            return this;
+        }
+
         public Builder setMaxCellWidth(int maxCellWidth) {
             this.maxCellWidth = maxCellWidth;
             return this;
@@ -226,14 +400,398 @@ public class TextGrid {
             return this;
         }
 
+        /**
+         * Only write an escape sequence where the effect of the output changes along a line, instead of wrapping every
+         * border, padding and text run in its own escape sequence.  This greatly reduces the size of grids with effects.
+         */
+        public Builder setTrackEffects(boolean trackEffects) {
+            this.trackEffects = trackEffects;
+            return this;
+        }
+
+        /**
+         * Set the number of threads used to generate the row bands of the grid.  The output is the same as generating
+         * the grid on a single thread.  The default is 1.  The threads are started by the first parallel render and
+         * reused by later ones; they are daemon threads that exit when they have been idle for a while.
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism != this.parallelism) {
+                releaseRenderPool();
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Generate the row bands of the grid in the given pool, with the parallelism of the pool, instead of in a pool
+         * of the builder's own.  The pool is not shut down by the builder.  Services that render many grids can share
+         * one pool between their builders.
+         */
+        public Builder setRenderPool(ForkJoinPool renderPool) {
+            releaseRenderPool();
+            this.renderPool = renderPool;
+            this.parallelism = renderPool == null ? 1 : renderPool.getParallelism();
+            return this;
+        }
+
+        /**
+         * Set a cache of rendered cell text shared by the grids rendered by this builder, or null for no cache.  The
+         * cache is not used when effects are tracked, since the escape sequences written then depend on the text
+         * around the cell, or for cells held in an arena, which would have to be decoded to key the cache.
+         */
+        public Builder setRenderCache(RenderCache renderCache) {
+            this.renderCache = renderCache;
+            return this;
+        }
+
+        /**
+         * Set how the cells of the grid are held until it is rendered.  Cells already added are moved to the new
+         * storage.  The default is {@link CellStorage#LIST}.
+         */
+        public Builder setCellStorage(CellStorage cellStorage) {
+            return setCellStore(cellStorage == CellStorage.COLUMNAR ? new ColumnarCellStore(gridWidth) : new ListCellStore());
+        }
+
+        /**
+         * Hold the text of the cells of the grid off the heap in the given arena.  Cells already added are moved to
+         * the arena.  The arena must stay open until the grid is rendered.
+         */
+        public Builder setCellArena(CellTextArena arena) {
+            return setCellStore(new ArenaCellStore(arena));
+        }
+
+        /**
+         * Set how text wider than its cell is handled.  Wrapped text makes the cell taller, up to the max cell height.
+         * Set the wrap mode before adding cells.  Wrapped lines are not cached by the render cache.
+         */
+        public Builder setWrapMode(WrapMode wrapMode) {
+            this.wrapMode = wrapMode;
+            return this;
+        }
+
+        /**
+         * Set how number cells are aligned.  Set the number alignment before adding cells.
+         */
+        public Builder setNumberAlign(NumberAlign numberAlign) {
+            this.numberAlign = numberAlign;
+            return this;
+        }
+
+        /**
+         * Set the thousands separator of the number cells added after it, or 0 for none.
+         */
+        public Builder setThousandsSeparator(char thousandsSeparator) {
+            this.thousandsSeparator = thousandsSeparator;
+            return this;
+        }
+
+        /**
+         * Set a listener for the metrics of each render of this builder and of the grids it generates, or null for no
+         * listener.  Renders are also reported as Flight Recorder events.  Nothing is measured when there is no
+         * listener and the event is not enabled.
+         */
+        public Builder setRenderListener(RenderListener renderListener) {
+            this.renderListener = renderListener;
+            return this;
+        }
+
         public Builder setBorderCharSet(BorderCharSet borderCharSet) {
             this.borderCharSet = borderCharSet;
             return this;
         }
 
         public TextGrid generate() {
-            gridHeight = cells.size() / gridWidth + (cells.size() % gridWidth == 0 ? 0 : 1);
-            return new TextGrid(range(0, gridHeight).mapToObj(this::generateCellRow).collect(Collectors.toList()));
+            startRender("generate");
+            try {
+                updateLayout();
+                if (parallelism > 1) {
+                    return new TextGrid(generateCellRows(getRenderPool(), 0, gridHeight), renderListener);
+                }
+                List<String[]> displayLines = new ArrayList<>(gridHeight);
+                List<String> band = new ArrayList<>();
+                LineWriter writer = newLineWriter(line -> band.add(line.toString()));
+                for (int row = 0; row < gridHeight; ++row) {
+                    writeCellRow(row, writer);
+                    displayLines.add(band.toArray(new String[0]));
+                    band.clear();
+                }
+                record(writer);
+                return new TextGrid(displayLines, renderListener);
+            } finally {
+                completeRender();
+            }
+        }
+
+        /**
+         * Render the grid directly to the given output, one row band at a time.  The output is the same as
+         * {@code generate().toString()} but only the lines of a single row band are held in memory at once.
+         */
+        public <A extends Appendable> A renderTo(A out) throws IOException {
+            startRender("renderTo");
+            try {
+                updateLayout();
+                if (parallelism > 1) {
+                    ForkJoinPool pool = getRenderPool();
+                    int batchSize = parallelism * PARALLEL_BATCH_ROWS;
+                    for (int row = 0; row < gridHeight; row += batchSize) {
+                        for (String[] lines : generateCellRows(pool, row, Math.min(row + batchSize, gridHeight))) {
+                            for (String line : lines) {
+                                out.append(line).append('\n');
+                            }
+                        }
+                    }
+                    return out;
+                }
+                try {
+                    LineWriter writer = newLineWriter(appendingSink(out));
+                    for (int row = 0; row < gridHeight; ++row) {
+                        writeCellRow(row, writer);
+                    }
+                    record(writer);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                return out;
+            } finally {
+                completeRender();
+            }
+        }
+
+        /**
+         * Render the grid to the given output asynchronously.  Bands of rows are rendered by the parallelism number of
+         * producer tasks into pooled buffers, which a writer task drains in order through small bounded queues, so a
+         * slow output does not hold up rendering and rendering does not fill up memory.  The tasks run on virtual
+         * threads where the runtime has them and on a small pool of daemon threads otherwise.  The returned future
+         * completes with the output once all the rows are written, or exceptionally with the failure of a task.
+         * Cancelling it stops the render.  The builder must not be changed until the future completes.
+         */
+        public <A extends Appendable> CompletableFuture<A> renderAsync(A out) {
+            startRender("renderAsync");
+            RenderStats stats = renderStats;
+            long cells = measuredCells;
+            long cellNanos = measureNanos;
+            try {
+                updateLayout();
+            } finally {
+                // the rest of the render belongs to the pipeline
+                renderStats = null;
+                measuredCells = 0;
+                measureNanos = 0;
+            }
+            long layout = layoutNanos;
+            return new RenderPipeline(gridHeight, parallelism, this::newLineWriter,
+                (writer, row) -> writeCellRow(row, writer), stats, () -> {
+                    if (stats != null) {
+                        stats.complete(cells, cellNanos, layout);
+                    }
+                }).start(out);
+        }
+
+        /**
+         * Render the grid to the given stream asynchronously and flush it.
+         *
+         * @see #renderAsync(Appendable)
+         */
+        public CompletableFuture<Void> showAsync(PrintStream out) {
+            return renderAsync(out).thenAccept(PrintStream::flush);
+        }
+
+        /**
+         * Get a publisher of the lines of the grid, without line separators.  Rows are rendered one at a time as a
+         * subscriber requests lines, on the thread that requests them, so the subscriber's demand paces the render.
+         * The builder must not be changed while a subscription is active.
+         */
+        public Flow.Publisher<CharSequence> publishLines() {
+            return new LinePublisher(this::updateLayout, this::newLineWriter, (writer, row) -> writeCellRow(row, writer));
+        }
+
+        /**
+         * Render the grid as UTF-8 directly to the given channel.  The output is the same as
+         * {@code generate().toString()} encoded as UTF-8, but it is encoded into a reusable buffer that is written to
+         * the channel in large chunks.
+         */
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            startRender("writeTo");
+            try {
+                updateLayout();
+                Utf8LineWriter writer = new Utf8LineWriter(channel, trackEffects);
+                try {
+                    for (int row = 0; row < gridHeight; ++row) {
+                        writeCellRow(row, writer);
+                    }
+                    writer.flush();
+                    record(writer);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            } finally {
+                completeRender();
+            }
+        }
+
+        /**
+         * Compute the exact size in bytes of the grid rendered as UTF-8 by {@link #writeTo(WritableByteChannel)},
+         * without holding the rendered grid.
+         */
+        public long computeOutputSize() {
+            updateLayout();
+            int tasks = Math.max(1, Math.min(parallelism, gridHeight));
+            return Arrays.stream(computeBandSizes(tasks > 1 ? getRenderPool() : null, tasks)).sum();
+        }
+
+        /**
+         * Export the grid as UTF-8 to the given file.  The size of each row band is computed first so that the file can
+         * be sized up front and each thread (see {@link #setParallelism(int)}) renders its rows into its own memory
+         * mapped region of the file.
+         */
+        public void exportTo(Path path) throws IOException {
+            startRender("exportTo");
+            try {
+                updateLayout();
+                int tasks = Math.max(1, Math.min(parallelism, gridHeight));
+                ForkJoinPool pool = tasks > 1 ? getRenderPool() : null;
+                long[] bandSizes = computeBandSizes(pool, tasks);
+                long[] offsets = new long[gridHeight + 1];
+                for (int row = 0; row < gridHeight; ++row) {
+                    offsets[row + 1] = offsets[row] + bandSizes[row];
+                }
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    if (pool == null) {
+                        exportRows(channel, 0, gridHeight, offsets);
+                    } else {
+                        invoke(pool, () -> {
+                            range(0, tasks).parallel().forEach(task ->
+                                exportRows(channel, task * gridHeight / tasks, (task + 1) * gridHeight / tasks, offsets));
+                            return null;
+                        });
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            } finally {
+                completeRender();
+            }
+        }
+
+        /**
+         * Render the grid as UTF-8 directly to the given stream.
+         *
+         * @see #writeTo(WritableByteChannel)
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            writeTo(Channels.newChannel(out));
+            out.flush();
+        }
+
+        /**
+         * Render the given rows directly to the given output in place of the cells added to this builder.  The cell
+         * widths are taken from the cell widths set on this builder (see {@link #setCellWidths(int...)}) adjusted to
+         * fit the content of the first {@code sampleRows} rows.  Only the sampled rows are held in memory, so rendering
+         * starts before the source is exhausted.  Lines of later rows that don't fit the sampled cell height are
+         * dropped unless row attributes are enabled, in which case each row is sized by its own content.
+         */
+        public <A extends Appendable> A renderTo(Iterator<Cell[]> rows, int sampleRows, A out) throws IOException {
+            Builder stream = copyStreamSettings();
+            List<Cell[]> sample = new ArrayList<>();
+            while (sample.size() < sampleRows && rows.hasNext()) {
+                Cell[] row = rows.next();
+                stream.adjustRowDimensions(row);
+                sample.add(row);
+            }
+            Iterator<Cell[]> sampleIterator = sample.iterator();
+            return stream.renderRows(new Iterator<Cell[]>() {
+                @Override
+                public boolean hasNext() {
+                    return sampleIterator.hasNext() || rows.hasNext();
+                }
+
+                @Override
+                public Cell[] next() {
+                    return sampleIterator.hasNext() ? sampleIterator.next() : rows.next();
+                }
+            }, out);
+        }
+
+        public <A extends Appendable> A renderTo(Stream<Cell[]> rows, int sampleRows, A out) throws IOException {
+            return renderTo(rows.iterator(), sampleRows, out);
+        }
+
+        /**
+         * Render the given rows directly to the given output in place of the cells added to this builder.  The rows
+         * are iterated twice; once to size the cells and once to render them.
+         */
+        public <A extends Appendable> A renderTo(Iterable<Cell[]> rows, A out) throws IOException {
+            Builder stream = copyStreamSettings();
+            for (Cell[] row : rows) {
+                stream.adjustRowDimensions(row);
+            }
+            return stream.renderRows(rows.iterator(), out);
+        }
+
+        /**
+         * Render the rows fromRow to toRow (exclusive) and columns fromCol to toCol (exclusive) of the given provider
+         * as a grid with the settings of this builder.  The edges of the viewport are drawn as the edges of the grid.
+         * Only the cells of the viewport are requested from the provider, so the cost of rendering a viewport does
+         * not depend on the size of the provider.
+         */
+        public <A extends Appendable> A renderViewport(GridDataProvider provider, int fromRow, int toRow, int fromCol,
+                                                       int toCol, A out) throws IOException, IllegalArgumentException {
+            if (fromRow < 0 || fromRow > toRow || toRow > provider.getRowCount()) {
+                throw new IllegalArgumentException(String.format("Row count is %d.  Got rows %d - %d.",
+                    provider.getRowCount(), fromRow, toRow));
+            }
+            if (fromCol < 0 || fromCol >= toCol || toCol > provider.getColumnCount()) {
+                throw new IllegalArgumentException(String.format("Column count is %d.  Got columns %d - %d.",
+                    provider.getColumnCount(), fromCol, toCol));
+            }
+            List<Cell[]> rows = new ArrayList<>(toRow - fromRow);
+            for (int row = fromRow; row < toRow; ++row) {
+                Cell[] rowCells = new Cell[toCol - fromCol];
+                for (int col = fromCol; col < toCol; ++col) {
+                    rowCells[col - fromCol] = provider.getCell(row, col);
+                }
+                rows.add(rowCells);
+            }
+            int[] viewportWidths = new int[toCol - fromCol];
+            for (int col = fromCol; col < toCol; ++col) {
+                int width = provider.getColumnWidth(col);
+                if (width <= 0) {
+                    width = MIN_CELL_WIDTH;
+                    for (Cell[] rowCells : rows) {
+                        if (rowCells[col - fromCol] != null) {
+                            for (CellText cellText : rowCells[col - fromCol].getTextLines()) {
+                                width = Math.max(width, Math.min(maxCellWidth, cellText.getWidth()));
+                            }
+                        }
+                    }
+                }
+                viewportWidths[col - fromCol] = width;
+            }
+            return copySettings(toCol - fromCol, enableRowAttributes).setCellWidths(viewportWidths).renderTo(rows, out);
+        }
+
+        /**
+         * Compile the settings and current column widths of this grid into an immutable template that renders rows of
+         * other cells with the same layout.  The border lines are rendered once, when the template is compiled.  Row
+         * heights are fitted to each rendered row and text wider than its column is truncated or wrapped.
+         */
+        public GridTemplate compileTemplate() {
+            updateLayout();
+            Builder layout = copySettings(gridWidth, true);
+            layout.renderListener = null;
+            int[] widths = new int[gridWidth];
+            for (int col = 0; col < gridWidth; ++col) {
+                widths[col] = layoutWidths[enableColumnAttributes ? col : 0];
+            }
+            layout.setCellWidths(widths).compileBorderLines();
+            if (numberScales != null) {
+                layout.numberScales = new int[gridWidth];
+                for (int col = 0; col < gridWidth; ++col) {
+                    layout.numberScales[col] = numberScales[enableColumnAttributes ? col : 0];
+                }
+            }
+            return new GridTemplate(layout);
         }
 
         /**
@@ -257,124 +815,662 @@ public class TextGrid {
 
         // ***** Helper Methods ***********************************************
 
-        private String[] generateCellRow(int row) {
-            int height = getPaddedCellHeight(row);
-            return range(0, gridWidth).mapToObj(col -> generateCell(row, col,
-                            height, getPaddedCellWidth(col), getCellText(row * gridWidth + col),
-                            getCellFillEffect(row * gridWidth + col)))
-                .reduce((cell1, cell2) -> range(0, hasBorder ? (height + (row == 0 ? 2 : 1)) : height).mapToObj(i ->
-                    format("%s%s", cell1[i], cell2[i])).toArray(String[]::new))
-                .orElse(new String[0]);
+        private Builder copySettings(int width, boolean enableRowAttributes) {
+            return copySettings(width, enableRowAttributes, true);
         }
 
-        private String[] generateCell(int row, int col, int height, int width, CellText[] cellText, TextEffect cellFillEffect) {
-            boolean isLastCol = col == gridWidth - 1;
-            if (hasBorder) {
-                return generateCellWithBorders(row, col, isLastRow(row), isLastCol, height, width, cellText, cellFillEffect);
+        private Builder copySettings(int width, boolean enableRowAttributes, boolean enableColumnAttributes) {
+            Builder builder = new Builder(width, enableRowAttributes, enableColumnAttributes, hasBorder);
+            builder.verticalAlign = verticalAlign;
+            builder.horizontalAlign = horizontalAlign;
+            builder.maxCellWidth = maxCellWidth;
+            builder.maxCellHeight = maxCellHeight;
+            builder.verticalCellPadding = verticalCellPadding;
+            builder.horizontalCellPadding = horizontalCellPadding;
+            builder.trackEffects = trackEffects;
+            builder.renderCache = renderCache;
+            builder.wrapMode = wrapMode;
+            builder.renderListener = renderListener;
+            builder.fillEffect = fillEffect;
+            builder.borderCharSet = borderCharSet;
+            builder.numberAlign = numberAlign;
+            builder.thousandsSeparator = thousandsSeparator;
+            return builder;
+        }
+
+        /**
+         * Copy the settings, column constraints and fixed cell widths of this builder, but none of its cells, for
+         * sizing streamed rows without changing the layout of this builder.
+         */
+        private Builder copyStreamSettings() {
+            Builder builder = copySettings(gridWidth, enableRowAttributes, enableColumnAttributes);
+            if (fixedCellWidths) {
+                builder.setCellWidths(cellWidths);
             }
-            Stream<String> centerStream = range(0, height).mapToObj(textRow ->
-                    format("%s", getDisplayText(cellText, row, textRow, width, cellFillEffect)));
+            builder.minCellWidths = minCellWidths;
+            builder.maxCellWidths = maxCellWidths;
+            builder.columnWeights = columnWeights;
+            builder.targetWidth = targetWidth;
+            return builder;
+        }
 
-            return (of(centerStream)).flatMap(Function.identity()).toArray(String[]::new);
+        private Builder setCellStore(CellStore store) {
+            cells.checkReadable();
+            for (int index = 0; index < cells.size(); ++index) {
+                store.add(cells.getCell(index));
+            }
+            cells = store;
+            return this;
         }
 
-        private String[] generateCellWithBorders(int row, int col, boolean isLastRow, boolean isLastCol, int height, int width, CellText[] cellText, TextEffect cellFillEffect) {
-            boolean isFirstRow = row == 0;
-            boolean ifFirstCol = col == 0;
+        private <A extends Appendable> A renderRows(Iterator<Cell[]> rows, A out) throws IOException {
+            startRender("renderTo");
+            try {
+                timeLayout();
+                record(writeRows(rows, out));
+                return out;
+            } finally {
+                completeRender();
+            }
+        }
 
-            String topLeftChar = cornerChar(cellFillEffect, true, true, isFirstRow, isLastRow, ifFirstCol, isLastCol);
-            String bottomLeftChar = cornerChar(cellFillEffect, false, true, isFirstRow, isLastRow, ifFirstCol, isLastCol);
-            String topRightChar = cornerChar(cellFillEffect, true, false, isFirstRow, isLastRow, ifFirstCol, isLastCol);
-            String bottomRightChar = cornerChar(cellFillEffect, false, false, isFirstRow, isLastRow, ifFirstCol, isLastCol);
-            String verticalChar = verticalChar(cellFillEffect);
-            String horizontalChar = horizontalChar(cellFillEffect);
+        /**
+         * Write the given rows to the given output with the current layout, without updating it.
+         *
+         * @return the writer used, for its counts
+         */
+        LineWriter writeRows(Iterator<Cell[]> rows, Appendable out) throws IOException {
+            LineWriter writer = newLineWriter(appendingSink(out));
+            boolean isFirstRow = true;
+            Cell[] next = rows.hasNext() ? rows.next() : null;
+            try {
+                while (next != null) {
+                    Cell[] row = next;
+                    if (row.length > gridWidth) {
+                        throw new IllegalArgumentException(String.format("Grid width is %d.  Got a row of %d cells.", gridWidth, row.length));
+                    }
+                    next = rows.hasNext() ? rows.next() : null;
+                    int cellHeight = enableRowAttributes ? getRowHeight(row) : cellHeights[0];
+                    writeCellRow(isFirstRow, next == null, cellHeight, new ListCellStore(Arrays.asList(row)), 0, writer);
+                    isFirstRow = false;
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return writer;
+        }
 
-            String top = format("%s%s%s", topLeftChar, horizontalChar.repeat(width), isLastCol ? topRightChar : "");
-            String bottom = format("%s%s%s", bottomLeftChar, horizontalChar.repeat(width), isLastCol ? bottomRightChar : "");
-            Stream<String> centerStream = range(0, height).mapToObj(textRow ->
-                    format("%s%s%s", verticalChar, getDisplayText(cellText, row, textRow, width, cellFillEffect),
-                            isLastCol ? verticalChar : ""));
+        /**
+         * Render every border line variant once, for a row without cell fill effects.
+         */
+        private void compileBorderLines() {
+            if (!hasBorder) {
+                return;
+            }
+            List<String> lines = new ArrayList<>();
+            LineWriter writer = newLineWriter(line -> lines.add(line.toString()));
+            CellStore noCells = new ListCellStore();
+            String[] compiled = new String[8];
+            for (int key = 0; key < compiled.length; ++key) {
+                boolean isTop = (key & 4) != 0;
+                boolean isFirstRow = (key & 2) != 0;
+                if (!isTop || isFirstRow) {
+                    writeBorderLine(isTop, isFirstRow, (key & 1) != 0, noCells, 0, writer);
+                    compiled[key] = lines.remove(0);
+                }
+            }
+            borderLines = compiled;
+        }
 
-            return (isFirstRow ?
-                    of(of(top), centerStream, of(bottom)) : of(centerStream, of(bottom))).
-                    flatMap(Function.identity()).toArray(String[]::new);
+        private ForkJoinPool getRenderPool() {
+            if (renderPool == null) {
+                renderPool = new ForkJoinPool(parallelism);
+                ownsRenderPool = true;
+            }
+            return renderPool;
         }
 
-        private String verticalChar(TextEffect cellFillEffect) {
-            return applyEffect(cellFillEffect, borderCharSet.get(10));
+        private void releaseRenderPool() {
+            if (ownsRenderPool) {
+                renderPool.shutdown();
+            }
+            renderPool = null;
+            ownsRenderPool = false;
         }
 
-        private String horizontalChar(TextEffect cellFillEffect) {
-            return applyEffect(cellFillEffect, borderCharSet.get(9));
+        private List<String[]> generateCellRows(ForkJoinPool pool, int fromRow, int toRow) {
+            return invoke(pool, () -> range(fromRow, toRow).parallel().mapToObj(this::generateCellRow).
+                collect(Collectors.toList()));
         }
 
-        private String cornerChar(TextEffect cellFillEffect, boolean... bits) {
-            int key = 0;
-            for (boolean bit : bits) {
-                key = (key << 1) + (bit ? 1 : 0);
+        private static <T> T invoke(ForkJoinPool pool, Callable<T> task) {
+            try {
+                return pool.submit(task).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while generating the grid.", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() :
+                    new IllegalStateException(e.getCause());
             }
-            return applyEffect(cellFillEffect, String.valueOf(borderCharSet.get(CORNER_CODES[key])));
         }
 
-        private String applyEffect(TextEffect cellFillEffect, String cc) {
-            TextEffect effect = cellFillEffect == null ? fillEffect : cellFillEffect;
-            return effect == null ? cc : effect.apply(cc);
+        String[] generateCellRow(int row) {
+            List<String> band = new ArrayList<>();
+            LineWriter writer = newLineWriter(line -> band.add(line.toString()));
+            writeCellRow(row, writer);
+            record(writer);
+            return band.toArray(new String[0]);
         }
 
-        private CellText[] getCellText(int index) {
-            return index < cells.size() ? cells.get(index).getTextLines() : EMPTY_CELL_TEXTS;
+        /**
+         * Count the UTF-8 bytes of each row band with the current layout, in the given pool if there is one.
+         */
+        private long[] computeBandSizes(ForkJoinPool pool, int tasks) {
+            long[] bandSizes = new long[gridHeight];
+            if (pool == null) {
+                sizeRows(0, gridHeight, bandSizes);
+            } else {
+                invoke(pool, () -> {
+                    range(0, tasks).parallel().forEach(task ->
+                        sizeRows(task * gridHeight / tasks, (task + 1) * gridHeight / tasks, bandSizes));
+                    return null;
+                });
+            }
+            return bandSizes;
         }
 
-        private TextEffect getCellFillEffect(int index) {
-            return index < cells.size() ? cells.get(index).getFillEffect() : null;
+        private void sizeRows(int fromRow, int toRow, long[] bandSizes) {
+            Utf8SizeWriter writer = new Utf8SizeWriter(trackEffects);
+            for (int row = fromRow; row < toRow; ++row) {
+                long start = writer.getOutputSize();
+                writeCellRow(row, writer);
+                bandSizes[row] = writer.getOutputSize() - start;
+            }
         }
 
-        private int getCellHeight(int row) {
-            return cellHeights[enableRowAttributes ? row : 0];
+        private void exportRows(FileChannel channel, int fromRow, int toRow, long[] offsets) {
+            if (fromRow < toRow) {
+                Utf8LineWriter writer = new Utf8LineWriter(
+                    new MappedRegionChannel(channel, offsets[fromRow], offsets[toRow]), trackEffects);
+                for (int row = fromRow; row < toRow; ++row) {
+                    writeCellRow(row, writer);
+                }
+                writer.flush();
+                record(writer);
+            }
+        }
+
+        private void startRender(String operation) {
+            renderStats = RenderStats.start(operation, renderListener, renderCache);
+        }
+
+        private void completeRender() {
+            if (renderStats != null) {
+                RenderStats stats = renderStats;
+                renderStats = null;
+                stats.complete(measuredCells, measureNanos, layoutNanos);
+                measuredCells = 0;
+                measureNanos = 0;
+            }
         }
 
-        private int getPaddedCellHeight(int row) {
-            return getCellHeight(row) + verticalCellPadding * 2;
+        /**
+         * Add the counts of the given finished writer to the stats of the current render, if they are collected.
+         */
+        private <W extends LineWriter> W record(W writer) {
+            RenderStats stats = renderStats;
+            if (stats != null) {
+                stats.add(writer);
+            }
+            return writer;
+        }
+
+        private void timeLayout() {
+            if (renderStats == null) {
+                layoutColumns();
+            } else {
+                long start = System.nanoTime();
+                layoutColumns();
+                layoutNanos = System.nanoTime() - start;
+            }
+        }
+
+        private void measureCell(int row, int col, Cell cell) {
+            if (!RenderStats.isEnabled(renderListener)) {
+                adjustCellDimensions(row, col, cell);
+            } else {
+                long start = System.nanoTime();
+                adjustCellDimensions(row, col, cell);
+                measureNanos += System.nanoTime() - start;
+                ++measuredCells;
+            }
+        }
+
+        private LineWriter newLineWriter(LineWriter.LineSink sink) {
+            return new LineWriter(sink, trackEffects);
+        }
+
+        private static LineWriter.LineSink appendingSink(Appendable out) {
+            return line -> {
+                try {
+                    out.append(line).append('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+        }
+
+        private void adjustRowDimensions(Cell[] row) {
+            for (int col = 0; col < row.length && col < gridWidth; ++col) {
+                if (row[col] != null) {
+                    adjustCellWidth(col, row[col].getTextLines());
+                    if (!enableRowAttributes) {
+                        cellHeights[0] = Math.min(maxCellHeight, Math.max(cellHeights[0], getLineCount(col, row[col].getTextLines())));
+                    }
+                }
+            }
+        }
+
+        private int getRowHeight(Cell[] row) {
+            int height = MIN_CELL_HEIGHT;
+            for (int col = 0; col < row.length && col < gridWidth; ++col) {
+                if (row[col] != null) {
+                    height = Math.max(height, getLineCount(col, row[col].getTextLines()));
+                }
+            }
+            return Math.min(maxCellHeight, height);
+        }
+
+        private void writeCellRow(int row, LineWriter out) {
+            writeCellRow(row == 0, isLastRow(row), getCellHeight(row), cells, row * gridWidth, out);
+        }
+
+        private void writeCellRow(boolean isFirstRow, boolean isLastRow, int cellHeight, CellStore store, int rowIndex, LineWriter out) {
+            if (hasBorder && isFirstRow) {
+                writeBorderLine(true, isFirstRow, isLastRow, store, rowIndex, out);
+            }
+            if (wrapMode != WrapMode.NONE) {
+                out.clearWrappedLines(gridWidth);
+            }
+            int height = cellHeight + verticalCellPadding * 2;
+            for (int textRow = 0; textRow < height; ++textRow) {
+                for (int col = 0; col < gridWidth; ++col) {
+                    TextEffect cellFillEffect = store.getFillEffect(rowIndex + col);
+                    if (hasBorder) {
+                        out.glyph(getEffect(cellFillEffect), borderCharSet, VERTICAL_INDEX, 1);
+                    }
+                    writeDisplayText(store, rowIndex + col, cellHeight, textRow, getPaddedCellWidth(col),
+                        cellFillEffect, out);
+                    if (hasBorder && col == gridWidth - 1) {
+                        out.glyph(getEffect(cellFillEffect), borderCharSet, VERTICAL_INDEX, 1);
+                    }
+                }
+                out.endLine();
+            }
+            if (hasBorder) {
+                writeBorderLine(false, isFirstRow, isLastRow, store, rowIndex, out);
+            }
+        }
+
+        private void writeBorderLine(boolean isTop, boolean isFirstRow, boolean isLastRow, CellStore store, int rowIndex, LineWriter out) {
+            if (borderLines != null && !hasFillEffect(store, rowIndex)) {
+                String line = borderLines[(isTop ? 4 : 0) | (isFirstRow ? 2 : 0) | (isLastRow ? 1 : 0)];
+                out.write(line, 0, line.length());
+                out.endLine();
+                return;
+            }
+            for (int col = 0; col < gridWidth; ++col) {
+                boolean isFirstCol = col == 0;
+                boolean isLastCol = col == gridWidth - 1;
+                TextEffect effect = getEffect(store.getFillEffect(rowIndex + col));
+                out.glyph(effect, borderCharSet, cornerIndex(isTop, true, isFirstRow, isLastRow, isFirstCol, isLastCol), 1);
+                out.glyph(effect, borderCharSet, HORIZONTAL_INDEX, getPaddedCellWidth(col));
+                if (isLastCol) {
+                    out.glyph(effect, borderCharSet, cornerIndex(isTop, false, isFirstRow, isLastRow, isFirstCol, isLastCol), 1);
+                }
+            }
+            out.endLine();
+        }
+
+        private boolean hasFillEffect(CellStore store, int rowIndex) {
+            for (int col = 0; col < gridWidth; ++col) {
+                if (store.getFillEffect(rowIndex + col) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int cornerIndex(boolean... bits) {
+            int key = 0;
+            for (boolean bit : bits) {
+                key = (key << 1) + (bit ? 1 : 0);
+            }
+            return CORNER_CODES[key];
+        }
+
+        private TextEffect getEffect(TextEffect cellFillEffect) {
+            return cellFillEffect == null ? fillEffect : cellFillEffect;
+        }
+
+        private int getCellHeight(int row) {
+            return layoutHeights[enableRowAttributes ? row : 0];
         }
 
         private int getPaddedCellWidth(int col) {
-            return cellWidths[enableColumnAttributes ? col : 0] + horizontalCellPadding * 2;
+            return layoutWidths[enableColumnAttributes ? col : 0] + horizontalCellPadding * 2;
         }
 
-        private void adjustCellDimensions(int row, int col, CellText[] textLines) {
+        private void adjustCellDimensions(int row, int col, Cell cell) {
             row = enableRowAttributes ? row : 0;
-            final int finalCol = enableColumnAttributes ? col : 0;
-            Arrays.stream(textLines).forEachOrdered(cellText ->
-                cellWidths[finalCol] = Math.min(maxCellWidth, Math.max(cellWidths[finalCol], cellText.getRawText().length())));
+            int lineCount;
+            if (cell instanceof NumberCell) {
+                adjustNumberWidth(col, (NumberCell) cell);
+                lineCount = 1;
+            } else {
+                adjustCellWidth(col, cell.getTextLines());
+                lineCount = getLineCount(col, cell.getTextLines());
+            }
             int heights = cellHeights.length;
             if (heights <= row) {
                 cellHeights = Arrays.copyOf(cellHeights, row + 1);
                 IntStream.rangeClosed(heights, row).forEach(i -> cellHeights[i] = MIN_CELL_HEIGHT);
             }
-            cellHeights[row] = Math.min(maxCellHeight, Math.max(cellHeights[row], textLines.length));
+            cellHeights[row] = Math.min(maxCellHeight, Math.max(cellHeights[row], lineCount));
+        }
+
+        /**
+         * Get the number of lines the given cell text takes in the given column, once wrapped.  Text is wrapped to the
+         * fixed width of the column, otherwise to the max cell width, which is the width of any column with text
+         * wider than it.
+         */
+        private int getLineCount(int col, CellText[] textLines) {
+            if (wrapMode == WrapMode.NONE) {
+                return textLines.length;
+            }
+            int width = fixedCellWidths ? cellWidths[enableColumnAttributes ? col : 0] : maxCellWidth;
+            int count = 0;
+            for (CellText cellText : textLines) {
+                count += TextWrap.countLines(cellText.getRawText(), width, wrapMode == WrapMode.BREAK_WORDS);
+            }
+            return count;
+        }
+
+        private void adjustCellWidth(int col, CellText[] textLines) {
+            if (fixedCellWidths) {
+                return;
+            }
+            final int finalCol = enableColumnAttributes ? col : 0;
+            Arrays.stream(textLines).forEachOrdered(cellText ->
+                cellWidths[finalCol] = Math.min(maxCellWidth, Math.max(cellWidths[finalCol], cellText.getWidth())));
+        }
+
+        /**
+         * Widen the column of the given number cell to fit it.  With decimal alignment the column fits its longest
+         * integer part and its most decimal places, which may come from different numbers.
+         */
+        private void adjustNumberWidth(int col, NumberCell cell) {
+            col = enableColumnAttributes ? col : 0;
+            int width = cell.getLength();
+            if (numberAlign == NumberAlign.DECIMAL) {
+                if (numberScales == null) {
+                    numberIntegerLengths = new int[gridWidth];
+                    numberScales = new int[gridWidth];
+                }
+                numberIntegerLengths[col] = Math.max(numberIntegerLengths[col],
+                    NumberText.getIntegerLength(cell.getUnscaled(), cell.getScale(), cell.getSeparator()));
+                numberScales[col] = Math.max(numberScales[col], cell.getScale());
+                width = numberIntegerLengths[col] + (numberScales[col] > 0 ? numberScales[col] + 1 : 0);
+            }
+            if (!fixedCellWidths) {
+                cellWidths[col] = Math.min(maxCellWidth, Math.max(cellWidths[col], width));
+            }
         }
 
-        private String getDisplayText(CellText[] cellTexts, int gridRow, int textRow, int width, TextEffect cellFillEffect) {
-            if (cellTexts.length < getCellHeight(gridRow) && verticalAlign != VerticalAlign.TOP) {
+        private void writeDisplayText(CellStore store, int index, int cellHeight, int textRow, int width, TextEffect cellFillEffect, LineWriter out) {
+            int textWidth = width - horizontalCellPadding * 2;
+            StringBuilder numberText = out.getTextBuffer();
+            int scale = store.formatNumber(index, numberText);
+            int lineCount = scale >= 0 ? 1 :
+                wrapMode == WrapMode.NONE ? store.getLineCount(index) : getWrappedLines(store, index, textWidth, out).size();
+            if (lineCount < cellHeight && verticalAlign != VerticalAlign.TOP) {
                 textRow -= verticalAlign == VerticalAlign.CENTER ?
-                    Math.ceil((getCellHeight(gridRow) - cellTexts.length + verticalCellPadding) / 2.0) :
-                    getCellHeight(gridRow) - cellTexts.length + verticalCellPadding;
+                    Math.ceil((cellHeight - lineCount + verticalCellPadding) / 2.0) :
+                    cellHeight - lineCount + verticalCellPadding;
             } else {
                 textRow -= verticalCellPadding;
             }
-            TextEffect effect = cellFillEffect == null ? fillEffect : cellFillEffect;
-            String fill = effect == null ? " ".repeat(width) : effect.apply(" ".repeat(width));
+            TextEffect effect = getEffect(cellFillEffect);
+            if (textRow >= 0 && textRow < cellHeight && textRow < lineCount) {
+                out.repeat(effect, ' ', horizontalCellPadding);
+                if (scale >= 0) {
+                    writeNumber(numberText, scale, index % gridWidth, textWidth, cellFillEffect, out);
+                } else if (wrapMode != WrapMode.NONE) {
+                    writeWrappedLine(store, index, getWrappedLines(store, index, textWidth, out), textRow, textWidth,
+                        cellFillEffect, out);
+                } else if (renderCache == null || trackEffects || !store.holdsCellText()) {
+                    CharSequence text = store.getText(index, textRow, out.getTextBuffer());
+                    store.writeText(index, textRow, text, 0, text.length(), out, textWidth, horizontalAlign, cellFillEffect);
+                } else {
+                    out.append(renderCache.get(store.getLine(index, textRow), textWidth, horizontalAlign, cellFillEffect));
+                }
+                out.repeat(effect, ' ', horizontalCellPadding);
+            } else {
+                out.repeat(effect, ' ', width);
+            }
+        }
+
+        /**
+         * Write the given formatted number right aligned to the given width.  A number too wide for its column is
+         * written as '#' across the column rather than cut, which would show a different number.
+         */
+        private void writeNumber(StringBuilder text, int scale, int col, int width, TextEffect cellFillEffect, LineWriter out) {
+            if (text.length() > width) {
+                out.repeat(cellFillEffect, '#', width);
+                return;
+            }
+            if (numberAlign == NumberAlign.DECIMAL && numberScales != null) {
+                int columnScale = numberScales[enableColumnAttributes ? col : 0];
+                // pad for the decimal places, and the decimal point, the number doesn't have
+                int padding = columnScale - scale + (scale == 0 && columnScale > 0 ? 1 : 0);
+                // short of the width, in case the width was capped below the decimal aligned width
+                for (int i = 0; i < padding && text.length() < width; ++i) {
+                    text.append(' ');
+                }
+            }
+            CellText.write(out, text, 0, text.length(), null, CellText.NO_SPANS, 0, 0, CellText.NO_EFFECTS, width,
+                HorizontalAlign.RIGHT, cellFillEffect);
+        }
 
-            return (textRow >= 0 && textRow < getCellHeight(gridRow) && textRow < cellTexts.length) ?
-                getDisplayText(cellTexts[textRow], width, cellFillEffect) : fill;
+        /**
+         * Get the wrapped lines of the cell at the given index of the row being written, wrapping the cell the first
+         * time they are asked for.
+         */
+        private TextWrap.Lines getWrappedLines(CellStore store, int index, int width, LineWriter out) {
+            TextWrap.Lines lines = out.getWrappedLines(index % gridWidth);
+            if (!lines.isWrapped()) {
+                boolean breakWords = wrapMode == WrapMode.BREAK_WORDS;
+                for (int line = 0; line < store.getLineCount(index); ++line) {
+                    lines.add(line, store.getText(index, line, out.getTextBuffer()), width, breakWords);
+                }
+                lines.setWrapped();
+            }
+            return lines;
         }
 
-        private String getDisplayText(CellText cellText, int width, TextEffect cellFillEffect) {
-            int textWidth = width - horizontalCellPadding * 2;
-            TextEffect effect = cellFillEffect == null ? fillEffect : cellFillEffect;
-            String fill = effect == null ? " ".repeat(horizontalCellPadding) :
-                    effect.apply(" ".repeat(horizontalCellPadding));
-            return String.format("%s%s%s", fill, cellText.getDisplayText(textWidth, horizontalAlign, horizontalChar(cellFillEffect), cellFillEffect), fill);
+        private void writeWrappedLine(CellStore store, int index, TextWrap.Lines lines, int textRow, int width,
+                                      TextEffect cellFillEffect, LineWriter out) {
+            int line = lines.getTextLine(textRow);
+            CharSequence text = store.getText(index, line, out.getTextBuffer());
+            store.writeText(index, line, text, lines.getStart(textRow), lines.getEnd(textRow), out, width,
+                horizontalAlign, cellFillEffect);
+        }
+
+        /**
+         * Update the grid height and lay out the columns for rendering.
+         */
+        int updateLayout() {
+            cells.checkReadable();
+            gridHeight = cells.size() / gridWidth + (cells.size() % gridWidth == 0 ? 0 : 1);
+            timeLayout();
+            layoutHeights = wrapMode != WrapMode.NONE && layoutWidths != cellWidths ? measureWrappedHeights() : cellHeights;
+            return gridHeight;
+        }
+
+        /**
+         * Measure the cell heights again with the text wrapped to the laid out widths, which the column constraints or
+         * the target width may have narrowed.
+         */
+        private int[] measureWrappedHeights() {
+            int[] heights = new int[cellHeights.length];
+            Arrays.fill(heights, MIN_CELL_HEIGHT);
+            StringBuilder buffer = new StringBuilder();
+            boolean breakWords = wrapMode == WrapMode.BREAK_WORDS;
+            for (int index = 0; index < cells.size(); ++index) {
+                int width = layoutWidths[enableColumnAttributes ? index % gridWidth : 0];
+                buffer.setLength(0);
+                int lineCount = 0;
+                if (cells.formatNumber(index, buffer) >= 0) {
+                    lineCount = 1;
+                } else {
+                    for (int line = 0; line < cells.getLineCount(index); ++line) {
+                        lineCount += TextWrap.countLines(cells.getText(index, line, buffer), width, breakWords);
+                    }
+                }
+                int row = enableRowAttributes ? index / gridWidth : 0;
+                heights[row] = Math.max(heights[row], Math.min(maxCellHeight, lineCount));
+            }
+            return heights;
+        }
+
+        /**
+         * Fit the cell widths to the column constraints and target width.  Each column starts at its min width and
+         * the rest of the target width is shared in proportion to the weighted width each column is missing, then
+         * whatever is left by rounding goes to the columns in order.
+         */
+        private void layoutColumns() {
+            if (minCellWidths == null && targetWidth <= 0) {
+                layoutWidths = cellWidths;
+                return;
+            }
+            int columns = enableColumnAttributes ? gridWidth : 1;
+            int[] widths = new int[gridWidth];
+            int[] contentWidths = new int[columns];
+            int[] minWidths = new int[columns];
+            long totalMin = 0;
+            long totalWidth = 0;
+            for (int col = 0; col < columns; ++col) {
+                minWidths[col] = minCellWidths == null ? MIN_CELL_WIDTH : minCellWidths[col];
+                int maxWidth = maxCellWidths == null ? Integer.MAX_VALUE : maxCellWidths[col];
+                contentWidths[col] = Math.max(minWidths[col], Math.min(maxWidth, cellWidths[col]));
+                widths[col] = contentWidths[col];
+                totalMin += minWidths[col];
+                totalWidth += widths[col];
+            }
+            int repeat = enableColumnAttributes ? 1 : gridWidth;
+            long available = targetWidth - (hasBorder ? gridWidth + 1 : 0) - (long) horizontalCellPadding * 2 * gridWidth;
+            if (targetWidth > 0 && totalWidth * repeat > available) {
+                long extra = Math.max(0, available / repeat - totalMin);
+                long totalDemand = 0;
+                for (int col = 0; col < columns; ++col) {
+                    totalDemand += (long) getColumnWeight(col) * (widths[col] - minWidths[col]);
+                }
+                long left = extra;
+                for (int col = 0; col < columns; ++col) {
+                    int demand = widths[col] - minWidths[col];
+                    long share = totalDemand == 0 ? 0 : Math.min(demand, extra * getColumnWeight(col) * demand / totalDemand);
+                    widths[col] = minWidths[col] + (int) share;
+                    left -= share;
+                }
+                for (int col = 0; col < columns && left > 0; ++col) {
+                    int share = (int) Math.min(left, contentWidths[col] - widths[col]);
+                    widths[col] += share;
+                    left -= share;
+                }
+            }
+            layoutWidths = widths;
+        }
+
+        private int getColumnWeight(int col) {
+            return columnWeights == null ? 1 : columnWeights[col];
+        }
+
+        int[] getCellWidths() {
+            return layoutWidths.clone();
+        }
+
+        int[] getCellHeights() {
+            return layoutHeights.clone();
+        }
+
+        int getGridWidth() {
+            return gridWidth;
+        }
+
+        int getCellCount() {
+            return cells.size();
+        }
+
+        /**
+         * Get the index of the cell width tracked for the given column.
+         */
+        int getWidthIndex(int col) {
+            return enableColumnAttributes ? col : 0;
+        }
+
+        /**
+         * Get the index of the cell height tracked for the given row.
+         */
+        int getHeightIndex(int row) {
+            return enableRowAttributes ? row : 0;
+        }
+
+        /**
+         * Get the width the given cell text needs, or the min width if the cell widths are fixed.
+         */
+        int measureCellWidth(CellText[] textLines) {
+            int width = MIN_CELL_WIDTH;
+            if (!fixedCellWidths) {
+                for (CellText cellText : textLines) {
+                    width = Math.max(width, Math.min(maxCellWidth, cellText.getWidth()));
+                }
+            }
+            return width;
+        }
+
+        /**
+         * Get the height the given cell text needs in the given column.
+         */
+        int measureCellHeight(int col, CellText[] textLines) {
+            return Math.min(maxCellHeight, Math.max(MIN_CELL_HEIGHT, getLineCount(col, textLines)));
+        }
+
+        /**
+         * Put the given cells, measured elsewhere, in place of the first cells of this builder and widen the cells to
+         * the given dimensions, indexed as by {@link #getWidthIndex(int)} and {@link #getHeightIndex(int)}.
+         */
+        void putMeasuredCells(List<Cell> cells, int[] widths, int[] heights) {
+            for (int index = 0; index < cells.size(); ++index) {
+                if (index < this.cells.size()) {
+                    this.cells.set(index, cells.get(index));
+                } else {
+                    this.cells.add(cells.get(index));
+                }
+            }
+            if (!fixedCellWidths) {
+                for (int col = 0; col < widths.length; ++col) {
+                    cellWidths[col] = Math.max(cellWidths[col], widths[col]);
+                }
+            }
+            if (cellHeights.length < heights.length) {
+                int length = cellHeights.length;
+                cellHeights = Arrays.copyOf(cellHeights, heights.length);
+                Arrays.fill(cellHeights, length, heights.length, MIN_CELL_HEIGHT);
+            }
+            for (int row = 0; row < heights.length; ++row) {
+                cellHeights[row] = Math.max(cellHeights[row], heights[row]);
+            }
         }
 
         private boolean isLastRow(int row) {
@@ -409,33 +1505,201 @@ public class TextGrid {
 
     public static class CellText {
 
+        private static final int[] NO_SPANS = {};
+        private static final TextEffect[] NO_EFFECTS = {};
+
         private final String text;
         private final TextEffect effect;
+        // (offset, length, effect index) triples of the styled runs of the text
+        private final int[] spans;
+        private final TextEffect[] spanEffects;
+        // the display width of the text in columns
+        private final int width;
+        // the hash code, computed on first use since cell text is a render cache key
+        private int hash = 0;
 
+        /**
+         * Create a cell text from text that may contain escape sequences.  Text that has a single effect over all of
+         * its characters gets that effect as its line effect, otherwise each styled run of the text keeps its own
+         * effect.
+         */
         public CellText(String text) {
-            this(TextEffect.decodeText(text), TextEffect.decode(text));
+            if (!TextEffect.isEncoded(text)) {
+                this.text = text;
+                this.effect = TextEffect.forMask(0);
+                this.spans = NO_SPANS;
+                this.spanEffects = NO_EFFECTS;
+                this.width = DisplayWidth.of(text);
+                return;
+            }
+            StringBuilder plainText = new StringBuilder(text.length());
+            SpanBuilder spanBuilder = new SpanBuilder();
+            TextEffect.decode(text, plainText, (offset, length, mask) ->
+                spanBuilder.addSpan(offset, length, TextEffect.forMask(mask)));
+            this.text = plainText.toString();
+            this.width = DisplayWidth.of(this.text);
+            if (spanBuilder.spanCount == 1 && spanBuilder.spans[0] == 0 && spanBuilder.spans[1] == this.text.length()) {
+                this.effect = spanBuilder.effects.get(0);
+                this.spans = NO_SPANS;
+                this.spanEffects = NO_EFFECTS;
+            } else {
+                this.effect = TextEffect.forMask(0);
+                this.spans = Arrays.copyOf(spanBuilder.spans, spanBuilder.spanCount * 3);
+                this.spanEffects = spanBuilder.effects.toArray(NO_EFFECTS);
+            }
         }
 
         public CellText(String text, TextEffect effect) {
+            this(text, effect, NO_SPANS, NO_EFFECTS);
+        }
+
+        CellText(String text, TextEffect effect, int[] spans, TextEffect[] spanEffects) {
             this.text = text;
             this.effect = effect;
+            this.spans = spans;
+            this.spanEffects = spanEffects;
+            this.width = DisplayWidth.of(text);
         }
+
         public String getRawText() {
             return text;
         }
 
+        /**
+         * Get the number of terminal columns taken by the text.  Wide characters like CJK and emoji take two columns
+         * and combining marks take none.
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        TextEffect getEffect() {
+            return effect;
+        }
+
+        int[] getSpans() {
+            return spans;
+        }
+
+        TextEffect[] getSpanEffects() {
+            return spanEffects;
+        }
+
+        /**
+         * Get the text aligned and truncated to the given width with the text effect applied.  The horizontal
+         * character is not used.
+         */
         public String getDisplayText(int width, HorizontalAlign horizontalAlign, String horizontalChar, TextEffect cellFillEffect) {
-            String displayText = horizontalAlign == HorizontalAlign.CENTER ? centerString(text, width) :
-                format(format("%%%s%d.%ds", horizontalAlign == HorizontalAlign.LEFT ? horizontalChar : "", width, width), text);
-            TextEffect cellEffect = effect == null || effect.getCodes().length == 0 ? cellFillEffect : effect;
+            StringBuilder builder = new StringBuilder();
+            write(new LineWriter(builder::append), width, horizontalAlign, cellFillEffect).endLine();
+            return builder.toString();
+        }
+
+        LineWriter write(LineWriter out, int width, HorizontalAlign horizontalAlign, TextEffect cellFillEffect) {
+            return write(out, text, 0, text.length(), effect, spans, 0, spans.length, spanEffects, width, horizontalAlign,
+                cellFillEffect);
+        }
 
-            return cellEffect == null ? displayText : cellEffect.apply(displayText);
+        /**
+         * Write the text between textStart and textEnd aligned and truncated to the given width.  The styled runs of
+         * the text are the (offset, length, effect index) triples of the given spans between spanStart and spanEnd.
+         */
+        static LineWriter write(LineWriter out, CharSequence text, int textStart, int textEnd, TextEffect effect,
+                                int[] spans, int spanStart, int spanEnd, TextEffect[] spanEffects, int width,
+                                HorizontalAlign horizontalAlign, TextEffect cellFillEffect) {
+            long fit = DisplayWidth.fit(text, textStart, textEnd, width);
+            int length = (int) (fit >>> 32);
+            int textWidth = (int) fit;
+            int leftPad = horizontalAlign == HorizontalAlign.LEFT ? 0 :
+                horizontalAlign == HorizontalAlign.CENTER ? (width - textWidth) / 2 : width - textWidth;
+            TextEffect cellEffect = effect == null || effect.isEmpty() ? cellFillEffect : effect;
+
+            out.beginEffect(cellEffect).repeat(' ', leftPad);
+            int start = textStart;
+            for (int i = spanStart; i < spanEnd && spans[i] < length; i += 3) {
+                int runStart = Math.max(spans[i], textStart);
+                int runEnd = Math.min(spans[i] + spans[i + 1], length);
+                if (runEnd <= runStart) {
+                    continue;
+                }
+                TextEffect spanEffect = spanEffects[spans[i + 2]];
+                out.append(text, start, runStart).endEffect(cellEffect).
+                    beginEffect(spanEffect).append(text, runStart, runEnd).endEffect(spanEffect).
+                    beginEffect(cellEffect);
+                start = runEnd;
+            }
+            return out.append(text, start, length).repeat(' ', width - textWidth - leftPad).endEffect(cellEffect);
         }
 
-        private static String centerString(String s, int width) {
-            return width > s.length() ?
-                format(format("%%-%ds", width), format(format("%%%ds", s.length() + (width - s.length()) / 2), s)) :
-                s.substring(0, width);
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CellText)) {
+                return false;
+            }
+            CellText cellText = (CellText) o;
+            return text.equals(cellText.text) && Objects.equals(effect, cellText.effect) &&
+                Arrays.equals(spans, cellText.spans) && Arrays.equals(spanEffects, cellText.spanEffects);
+        }
+
+        @Override
+        public int hashCode() {
+            if (hash == 0) {
+                hash = Objects.hash(text, effect, Arrays.hashCode(spans), Arrays.hashCode(spanEffects));
+            }
+            return hash;
+        }
+
+        // ***** inner class : SpanBuilder ************************************
+
+        /**
+         * Builds a cell text from runs of text that each have their own effect.
+         */
+        public static class SpanBuilder {
+            private final StringBuilder text = new StringBuilder();
+            private final List<TextEffect> effects = new ArrayList<>();
+            private int[] spans = new int[12];
+            private int spanCount = 0;
+
+            public SpanBuilder append(String text) {
+                return append(text, null);
+            }
+
+            public SpanBuilder append(String text, TextEffect effect) {
+                int offset = this.text.length();
+                this.text.append(text);
+                if (effect != null && !effect.isEmpty() && !text.isEmpty()) {
+                    addSpan(offset, text.length(), effect);
+                }
+                return this;
+            }
+
+            public CellText build() {
+                return new CellText(text.toString(), null, Arrays.copyOf(spans, spanCount * 3),
+                    effects.toArray(NO_EFFECTS));
+            }
+
+            private void addSpan(int offset, int length, TextEffect effect) {
+                int last = (spanCount - 1) * 3;
+                if (spanCount > 0 && spans[last] + spans[last + 1] == offset && effects.get(spans[last + 2]).equals(effect)) {
+                    spans[last + 1] += length;
+                    return;
+                }
+                int index = effects.indexOf(effect);
+                if (index < 0) {
+                    index = effects.size();
+                    effects.add(effect);
+                }
+                if (spans.length < (spanCount + 1) * 3) {
+                    spans = Arrays.copyOf(spans, spans.length * 2);
+                }
+                spans[spanCount * 3] = offset;
+                spans[spanCount * 3 + 1] = length;
+                spans[spanCount * 3 + 2] = index;
+                ++spanCount;
+            }
         }
     }
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.util.Arrays;
+
+/**
+ * Greedy word wrapping of text to a width in columns.  The wrapped lines are found as index ranges over the text, so
+ * wrapping allocates nothing.  Lines break at spaces, which are dropped from the ends of the lines.  Words wider than
+ * the width either get a line of their own, to be truncated, or are broken across lines.
+ */
+final class TextWrap {
+
+    private TextWrap() {
+    }
+
+    /**
+     * Get the number of lines the given text wraps to.  Empty text is a single line.
+     */
+    static int countLines(CharSequence text, int width, boolean breakWords) {
+        int count = 1;
+        int start = nextStart(text, lineEnd(text, 0, width, breakWords));
+        while (start < text.length()) {
+            start = nextStart(text, lineEnd(text, start, width, breakWords));
+            ++count;
+        }
+        return count;
+    }
+
+    private static int lineEnd(CharSequence text, int start, int width, boolean breakWords) {
+        int length = text.length();
+        int end = (int) (DisplayWidth.fit(text, start, length, width) >>> 32);
+        if (end == length) {
+            return end;
+        }
+        int breakAt = end;
+        while (breakAt > start && text.charAt(breakAt) != ' ') {
+            --breakAt;
+        }
+        while (breakAt > start && text.charAt(breakAt - 1) == ' ') {
+            --breakAt;
+        }
+        if (breakAt > start) {
+            return breakAt;
+        }
+        // a word wider than the width
+        if (breakWords) {
+            return Math.max(end, start + Character.charCount(Character.codePointAt(text, start)));
+        }
+        while (end < length && text.charAt(end) != ' ') {
+            ++end;
+        }
+        return end;
+    }
+
+    private static int nextStart(CharSequence text, int end) {
+        while (end < text.length() && text.charAt(end) == ' ') {
+            ++end;
+        }
+        return end;
+    }
+
+    // ***** inner class : Lines ***********************************************
+
+    /**
+     * The wrapped lines of the text lines of a cell, each as the index of its text line and its range in that text
+     * line.  A cell is wrapped once for all the rows of text it is written in.
+     */
+    static final class Lines {
+        private boolean wrapped = false;
+        private int count = 0;
+        private int[] textLines = new int[4];
+        // the start index of each line in the high 32 bits and its end index in the low 32 bits
+        private long[] ranges = new long[4];
+
+        boolean isWrapped() {
+            return wrapped;
+        }
+
+        void setWrapped() {
+            wrapped = true;
+        }
+
+        void clear() {
+            wrapped = false;
+            count = 0;
+        }
+
+        /**
+         * Add the lines the given text line wraps to.
+         */
+        void add(int textLine, CharSequence text, int width, boolean breakWords) {
+            int start = 0;
+            do {
+                int end = lineEnd(text, start, width, breakWords);
+                if (count == ranges.length) {
+                    textLines = Arrays.copyOf(textLines, count * 2);
+                    ranges = Arrays.copyOf(ranges, count * 2);
+                }
+                textLines[count] = textLine;
+                ranges[count++] = (long) start << 32 | end;
+                start = nextStart(text, end);
+            } while (start < text.length());
+        }
+
+        int size() {
+            return count;
+        }
+
+        int getTextLine(int line) {
+            return textLines[line];
+        }
+
+        int getStart(int line) {
+            return (int) (ranges[line] >>> 32);
+        }
+
+        int getEnd(int line) {
+            return (int) ranges[line];
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A line writer that encodes its output as UTF-8 straight into a reusable byte buffer, which is written to a channel
+ * whenever it fills up.  Border glyphs and escape sequences are copied from their pre-encoded forms and text is
+ * encoded with an ASCII fast path, so no charset encoder is involved.  IO errors are thrown as
+ * {@link UncheckedIOException}.
+ */
+class Utf8LineWriter extends LineWriter {
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private final ByteBuffer buffer;
+    private final WritableByteChannel channel;
+    private char highSurrogate = 0;
+    private long flushedSize = 0;
+
+    Utf8LineWriter(WritableByteChannel channel, boolean trackEffects) {
+        this(channel, trackEffects, DEFAULT_BUFFER_SIZE);
+    }
+
+    Utf8LineWriter(WritableByteChannel channel, boolean trackEffects, int bufferSize) {
+        super(null, trackEffects);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, MAX_CHAR_BYTES));
+    }
+
+    /**
+     * Write any buffered bytes to the channel.
+     */
+    void flush() {
+        buffer.flip();
+        flushedSize += buffer.remaining();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Get the number of bytes written so far, including buffered bytes.
+     */
+    @Override
+    long getOutputSize() {
+        return flushedSize + buffer.position();
+    }
+
+    @Override
+    void write(char c) {
+        if (c < 0x80 && highSurrogate == 0) {
+            ensureRemaining(1);
+            buffer.put((byte) c);
+        } else {
+            encode(c);
+        }
+    }
+
+    @Override
+    void write(CharSequence text, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            write(text.charAt(i));
+        }
+    }
+
+    @Override
+    void write(char c, int count) {
+        if (c < 0x80) {
+            for (int i = 0; i < count; ++i) {
+                write(c);
+            }
+        } else {
+            char[] chars = {c};
+            write(new String(chars).getBytes(StandardCharsets.UTF_8), count);
+        }
+    }
+
+    @Override
+    void writeGlyph(TextGrid.Builder.BorderCharSet borderCharSet, int index, int count) {
+        write(borderCharSet.getUtf8(index), count);
+    }
+
+    @Override
+    void writeFragment(RenderCache.Fragment fragment) {
+        if (highSurrogate != 0) {
+            write(fragment.getText(), 0, fragment.getText().length());
+        } else {
+            write(fragment.getUtf8(), 1);
+        }
+    }
+
+    @Override
+    void writeEffect(TextEffect effect, boolean reset) {
+        write(effect == null ? TextEffect.getResetBytes() : reset ? effect.getResetPrefixBytes() : effect.getPrefixBytes(), 1);
+    }
+
+    @Override
+    void writeLine() {
+        write('\n');
+    }
+
+    private void write(byte[] bytes, int count) {
+        for (int i = 0; i < count; ++i) {
+            if (buffer.remaining() < bytes.length) {
+                flush();
+            }
+            if (buffer.remaining() < bytes.length) {
+                // larger than the buffer
+                for (byte b : bytes) {
+                    ensureRemaining(1);
+                    buffer.put(b);
+                }
+            } else {
+                buffer.put(bytes);
+            }
+        }
+    }
+
+    private void encode(char c) {
+        ensureRemaining(MAX_CHAR_BYTES);
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+                return;
+            }
+            // unpaired surrogate
+            buffer.put((byte) '?');
+            write(c);
+        } else if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | c >> 6));
+            buffer.put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | c >> 12));
+            buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | c & 0x3F));
+        }
+    }
+
+    private void ensureRemaining(int count) {
+        if (buffer.remaining() < count) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower;
+
+/**
+ * A line writer that counts the bytes the lines written to it take encoded as UTF-8 by a {@link Utf8LineWriter},
+ * without encoding or holding them.  Border glyphs, escape sequences and cached fragments are counted by the length of
+ * their pre-encoded forms and text by the UTF-8 length of each char.
+ */
+class Utf8SizeWriter extends LineWriter {
+
+    private char highSurrogate = 0;
+    private long size = 0;
+
+    Utf8SizeWriter(boolean trackEffects) {
+        super(null, trackEffects);
+    }
+
+    /**
+     * Get the number of bytes written so far.
+     */
+    @Override
+    long getOutputSize() {
+        return size;
+    }
+
+    @Override
+    void write(char c) {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                size += 4;
+                return;
+            }
+            // unpaired surrogate, written as '?'
+            ++size;
+            write(c);
+        } else if (c < 0x80) {
+            ++size;
+        } else if (c < 0x800) {
+            size += 2;
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            ++size;
+        } else {
+            size += 3;
+        }
+    }
+
+    @Override
+    void write(CharSequence text, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            write(text.charAt(i));
+        }
+    }
+
+    @Override
+    void write(char c, int count) {
+        if (c < 0x80) {
+            if (count > 0) {
+                write(c);
+                size += count - 1;
+            }
+        } else {
+            write(c < 0x800 ? 2 : Character.isSurrogate(c) ? 1 : 3, count);
+        }
+    }
+
+    @Override
+    void writeGlyph(TextGrid.Builder.BorderCharSet borderCharSet, int index, int count) {
+        write(borderCharSet.getUtf8(index).length, count);
+    }
+
+    @Override
+    void writeFragment(RenderCache.Fragment fragment) {
+        if (highSurrogate != 0) {
+            write(fragment.getText(), 0, fragment.getText().length());
+        } else {
+            size += fragment.getUtf8().length;
+        }
+    }
+
+    @Override
+    void writeEffect(TextEffect effect, boolean reset) {
+        write((effect == null ? TextEffect.getResetBytes() : reset ? effect.getResetPrefixBytes() :
+            effect.getPrefixBytes()).length, 1);
+    }
+
+    @Override
+    void writeLine() {
+        write('\n');
+    }
+
+    private void write(int byteLength, int count) {
+        size += (long) byteLength * Math.max(count, 0);
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.tbeerbower;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CellTextArenaTest {
+
+    @Test
+    public void cellArena() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextEffect cyan = new TextEffect(TextEffect.Code.BACKGROUND_CYAN);
+        TextGrid.CellText spans = new TextGrid.CellText.SpanBuilder().append("a ").append("b", red).append(" c").build();
+        TextGrid.Builder builder = new TextGrid.Builder(4, true, true, true).setHorizontalCellPadding(1);
+        try (CellTextArena arena = new CellTextArena(64)) {
+            builder.addCell("first").setCellArena(arena);
+            for (int i = 0; i < 4 * 30; ++i) {
+                builder.addCell(i % 4 == 0 ? cyan : null, new TextGrid.CellText(i % 2 == 0 ? "OK" : red.apply("FAILED")),
+                    i % 3 == 0 ? spans : new TextGrid.CellText("\u00E9t\u00E9 \u2550 \uD83D\uDE00"));
+            }
+            builder.setCell(2, 1, "Replaced", "Twice");
+            String expected = builder.generate().toString();
+            Assert.assertTrue(arena.getAllocatedBytes() > 64);
+            Assert.assertTrue(arena.getUsedBytes() > 0);
+
+            Assert.assertEquals(expected, builder.renderTo(new StringBuilder()).toString());
+            RenderCache cache = new RenderCache(10);
+            Assert.assertEquals(expected, builder.setRenderCache(cache).setParallelism(3).generate().toString());
+            Assert.assertEquals(0, cache.getHits() + cache.getMisses());
+            builder.setRenderCache(null).setParallelism(1);
+            builder.setCellStorage(TextGrid.Builder.CellStorage.LIST);
+            Assert.assertEquals(expected, builder.generate().toString());
+            builder.setCellArena(arena);
+            Assert.assertEquals(expected, builder.generate().toString());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cellArena_closed() {
+        TextGrid.Builder builder = new TextGrid.Builder(2);
+        try (CellTextArena arena = new CellTextArena()) {
+            builder.setCellArena(arena).addCell("a").addCell("b");
+        }
+        builder.generate();
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.tbeerbower;
+
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentGridBuilderTest {
+
+    @Test
+    public void generate() {
+        for (boolean attributes : new boolean[]{false, true}) {
+            TextGrid.Builder expected = new TextGrid.Builder(4, attributes, attributes, true).setHorizontalCellPadding(1);
+            for (int row = 0; row < 500; ++row) {
+                for (int col = 0; col < 4; ++col) {
+                    expected.setCell(row, col, cellText(row, col));
+                }
+            }
+
+            ConcurrentGridBuilder builder = new ConcurrentGridBuilder(
+                new TextGrid.Builder(4, attributes, attributes, true).setHorizontalCellPadding(1), 500);
+            IntStream.range(0, 500 * 4).parallel().forEach(i -> builder.setCell(i / 4, i % 4, cellText(i / 4, i % 4)));
+            Assert.assertEquals(expected.generate().toString(), builder.generate().toString());
+        }
+    }
+
+    @Test
+    public void generate_emptyCells() {
+        ConcurrentGridBuilder builder = new ConcurrentGridBuilder(new TextGrid.Builder(2), 2);
+        builder.setCell(1, 1, "x");
+        Assert.assertEquals(
+            "+-+-+\n" +
+            "| | |\n" +
+            "+-+-+\n" +
+            "| |x|\n" +
+            "+-+-+\n", builder.generate().toString());
+    }
+
+    @Test
+    public void setCell_outOfRange() {
+        ConcurrentGridBuilder builder = new ConcurrentGridBuilder(new TextGrid.Builder(2), 3);
+        try {
+            builder.setCell(3, 0, "x");
+            Assert.fail("Expected an IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            builder.setCell(0, 2, "x");
+            Assert.fail("Expected an IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_notEmpty() {
+        new ConcurrentGridBuilder(new TextGrid.Builder(2).addCell("x"), 3);
+    }
+
+    private static String[] cellText(int row, int col) {
+        return row % 7 == col ? new String[]{"Cell " + row, "line two"} : new String[]{"R" + row + "C" + col};
+    }
+}
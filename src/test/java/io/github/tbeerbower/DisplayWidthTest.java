@@ -0,0 +1,37 @@
+package io.github.tbeerbower;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DisplayWidthTest {
+
+    @Test
+    public void of() {
+        Assert.assertEquals(1, DisplayWidth.of('a'));
+        Assert.assertEquals(1, DisplayWidth.of(0xE9));
+        Assert.assertEquals(2, DisplayWidth.of(0x4E2D));
+        Assert.assertEquals(2, DisplayWidth.of(0xAC00));
+        Assert.assertEquals(2, DisplayWidth.of(0xFF21));
+        Assert.assertEquals(2, DisplayWidth.of(0x1F600));
+        Assert.assertEquals(0, DisplayWidth.of(0x0301));
+        Assert.assertEquals(0, DisplayWidth.of(0x200D));
+        Assert.assertEquals(0, DisplayWidth.of(0xFE0F));
+        Assert.assertEquals(1, DisplayWidth.of(0x2550));
+
+        Assert.assertEquals(3, DisplayWidth.of("abc"));
+        Assert.assertEquals(4, DisplayWidth.of("\u4E2D\u6587"));
+        Assert.assertEquals(2, DisplayWidth.of("e\u0301e"));
+        Assert.assertEquals(3, DisplayWidth.of("a\uD83D\uDE00"));
+    }
+
+    @Test
+    public void fit() {
+        Assert.assertEquals(2L << 32 | 2, DisplayWidth.fit("abc", 2));
+        Assert.assertEquals(3L << 32 | 3, DisplayWidth.fit("abc", 5));
+        // a wide character is not split
+        Assert.assertEquals(1L << 32 | 2, DisplayWidth.fit("\u4E2D\u6587", 3));
+        // a trailing combining mark stays with its base
+        Assert.assertEquals(2L << 32 | 1, DisplayWidth.fit("e\u0301e", 1));
+        Assert.assertEquals(0L, DisplayWidth.fit("\uD83D\uDE00", 1));
+    }
+}
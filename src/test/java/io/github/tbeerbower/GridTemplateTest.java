@@ -0,0 +1,74 @@
+package io.github.tbeerbower;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GridTemplateTest {
+
+    @Test
+    public void render() {
+        TextGrid.Builder builder = new TextGrid.Builder(3, false, true, true).setHorizontalCellPadding(1).
+            setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2).addCell("Name").addCell("Count").addCell("Status");
+        GridTemplate template = builder.compileTemplate();
+        Assert.assertArrayEquals(new int[]{4, 5, 6}, template.getCellWidths());
+
+        List<TextGrid.Cell[]> rows = createRows(4);
+        TextGrid.Builder expected = new TextGrid.Builder(3, true, true, true).setHorizontalCellPadding(1).
+            setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2).setCellWidths(4, 5, 6);
+        rows.forEach(row -> IntStream.range(0, 3).forEach(col -> expected.addCell(row[col])));
+        Assert.assertEquals(expected.generate().toString(), template.render(rows));
+
+        Assert.assertEquals("", template.render());
+        Assert.assertEquals(new TextGrid.Builder(3, true, true, true).setHorizontalCellPadding(1).
+            setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2).setCellWidths(4, 5, 6).
+            addCell("a").addCell("b").generate().toString(), template.render(new TextGrid.Cell[][]{{cell("a"), cell("b")}}));
+    }
+
+    @Test
+    public void render_fillEffect() {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextEffect blue = new TextEffect(TextEffect.Code.BLUE);
+        TextGrid.Builder builder = new TextGrid.Builder(2, false, true, true).setFillEffect(blue).setTrackEffects(true).
+            setCellWidths(3, 3);
+        GridTemplate template = builder.compileTemplate();
+
+        TextGrid.Cell[] plain = {cell("a"), cell("b")};
+        TextGrid.Cell[] filled = {new TextGrid.Cell(red, new TextGrid.CellText("c")), cell("d")};
+        TextGrid.Builder expected = new TextGrid.Builder(2, true, true, true).setFillEffect(blue).setTrackEffects(true).
+            setCellWidths(3, 3).addCell(plain[0]).addCell(plain[1]).addCell(filled[0]).addCell(filled[1]);
+        Assert.assertEquals(expected.generate().toString(), template.render(plain, filled));
+    }
+
+    @Test
+    public void render_concurrent() {
+        GridTemplate template = new TextGrid.Builder(3).setCellWidths(6, 6, 6).compileTemplate();
+        List<TextGrid.Cell[]> rows = createRows(20);
+        String expected = template.render(rows);
+        List<String> results = IntStream.range(0, 64).parallel().mapToObj(i -> template.render(rows)).
+            collect(Collectors.toList());
+        results.forEach(result -> Assert.assertEquals(expected, result));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void render_rowTooWide() {
+        new TextGrid.Builder(2).compileTemplate().render(new TextGrid.Cell[][]{{cell("a"), cell("b"), cell("c")}});
+    }
+
+    private static List<TextGrid.Cell[]> createRows(int count) {
+        List<TextGrid.Cell[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            rows.add(new TextGrid.Cell[]{cell("row" + i), cell(String.valueOf(i * 37)),
+                i % 3 == 0 ? new TextGrid.Cell(new TextGrid.CellText("ok"), new TextGrid.CellText("late")) : cell("ok")});
+        }
+        return rows;
+    }
+
+    private static TextGrid.Cell cell(String text) {
+        return new TextGrid.Cell(new TextGrid.CellText(text));
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.tbeerbower;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LinePublisherTest {
+
+    @Test
+    public void publishLines() {
+        TextGrid.Builder builder = createBuilder(50);
+        LineCollector collector = new LineCollector();
+        builder.publishLines().subscribe(collector);
+
+        Assert.assertTrue(collector.lines.isEmpty());
+        collector.subscription.request(3);
+        Assert.assertEquals(3, collector.lines.size());
+        Assert.assertFalse(collector.completed);
+
+        collector.subscription.request(Long.MAX_VALUE);
+        Assert.assertTrue(collector.completed);
+        StringBuilder text = new StringBuilder();
+        for (CharSequence line : collector.lines) {
+            text.append(line).append('\n');
+        }
+        Assert.assertEquals(builder.generate().toString(), text.toString());
+    }
+
+    @Test
+    public void publishLines_requestFromOnNext() {
+        TextGrid.Builder builder = createBuilder(20);
+        LineCollector collector = new LineCollector() {
+            @Override
+            public void onNext(CharSequence item) {
+                super.onNext(item);
+                subscription.request(1);
+            }
+        };
+        builder.publishLines().subscribe(collector);
+        collector.subscription.request(1);
+
+        Assert.assertTrue(collector.completed);
+        Assert.assertEquals(builder.generate().toString().split("\n").length, collector.lines.size());
+    }
+
+    @Test
+    public void publishLines_cancel() {
+        LineCollector collector = new LineCollector();
+        createBuilder(20).publishLines().subscribe(collector);
+        collector.subscription.request(2);
+        collector.subscription.cancel();
+        collector.subscription.request(5);
+
+        Assert.assertEquals(2, collector.lines.size());
+        Assert.assertFalse(collector.completed);
+    }
+
+    @Test
+    public void publishLines_invalidRequest() {
+        LineCollector collector = new LineCollector();
+        createBuilder(5).publishLines().subscribe(collector);
+        collector.subscription.request(0);
+
+        Assert.assertTrue(collector.error instanceof IllegalArgumentException);
+        Assert.assertTrue(collector.lines.isEmpty());
+    }
+
+    private static TextGrid.Builder createBuilder(int rows) {
+        TextGrid.Builder builder = new TextGrid.Builder(3);
+        for (int i = 0; i < rows * 3; ++i) {
+            builder.addCell("Cell" + i, i % 4 == 0 ? "x" : "");
+        }
+        return builder;
+    }
+
+    private static class LineCollector implements Flow.Subscriber<CharSequence> {
+        final List<CharSequence> lines = new ArrayList<>();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(CharSequence item) {
+            lines.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.tbeerbower;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LiveTextGridTest {
+
+    @Test
+    public void repaint() throws Exception {
+        LiveTextGrid grid = new LiveTextGrid(new TextGrid.Builder(2).setHorizontalCellPadding(1)).
+            setCell(0, 0, "one").setCell(0, 1, "two").
+            setCell(1, 0, "three").setCell(1, 1, "four");
+
+        Assert.assertEquals("\u001B[H\u001B[2J" +
+                "+-------+-------+\n" +
+                "|  one  |  two  |\n" +
+                "+-------+-------+\n" +
+                "| three | four  |\n" +
+                "+-------+-------+\n",
+            grid.repaint(new StringBuilder()).toString());
+
+        // nothing changed
+        Assert.assertEquals("\u001B[6;1H", grid.repaint(new StringBuilder()).toString());
+
+        // only the changed line is written
+        grid.setCell(1, 1, "five");
+        Assert.assertEquals("\u001B[4;1H| three | five  |\u001B[K\u001B[6;1H", grid.repaint(new StringBuilder()).toString());
+    }
+
+    @Test
+    public void repaint_layoutChange() throws Exception {
+        LiveTextGrid grid = new LiveTextGrid(new TextGrid.Builder(2).setHorizontalCellPadding(1)).
+            setCell(0, 0, "one").setCell(0, 1, "two");
+        grid.repaint(new StringBuilder());
+
+        grid.setCell(0, 1, "seventeen");
+        Assert.assertEquals("\u001B[H\u001B[2J" +
+                "+-----------+-----------+\n" +
+                "|    one    | seventeen |\n" +
+                "+-----------+-----------+\n",
+            grid.repaint(new StringBuilder()).toString());
+    }
+}
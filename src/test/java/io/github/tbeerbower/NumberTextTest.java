@@ -0,0 +1,72 @@
+package io.github.tbeerbower;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NumberTextTest {
+
+    @Test
+    public void format() {
+        Assert.assertEquals("0", format(0, 0, (char) 0));
+        Assert.assertEquals("-42", format(-42, 0, (char) 0));
+        Assert.assertEquals("1,234,567", format(1234567, 0, ','));
+        Assert.assertEquals("123,456", format(123456, 0, ','));
+        Assert.assertEquals("-1,234.50", format(-123450, 2, ','));
+        Assert.assertEquals("0.05", format(5, 2, (char) 0));
+        Assert.assertEquals("-0.005", format(-5, 3, ','));
+        Assert.assertEquals("-9,223,372,036,854,775,808", format(Long.MIN_VALUE, 0, ','));
+        Assert.assertEquals("9223372036854775807", format(Long.MAX_VALUE, 0, (char) 0));
+    }
+
+    @Test
+    public void getLength() {
+        long[] values = {0, 7, -7, 999, 1000, -123456789, 5, Long.MIN_VALUE};
+        for (long value : values) {
+            for (int scale = 0; scale < 4; ++scale) {
+                for (char separator : new char[]{0, ','}) {
+                    String text = format(value, scale, separator);
+                    Assert.assertEquals(text, text.length(), NumberText.getLength(value, scale, separator));
+                    int point = text.indexOf('.');
+                    Assert.assertEquals(text, point < 0 ? text.length() : point,
+                        NumberText.getIntegerLength(value, scale, separator));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void toUnscaled() {
+        Assert.assertEquals(314, NumberText.toUnscaled(3.14159, 2));
+        Assert.assertEquals(-3, NumberText.toUnscaled(-2.5, 0));
+        Assert.assertEquals(3, NumberText.toUnscaled(2.5, 0));
+        Assert.assertEquals(29, NumberText.toUnscaled(0.285, 2));
+        Assert.assertEquals(101, NumberText.toUnscaled(1.005, 2));
+        Assert.assertEquals(-101, NumberText.toUnscaled(-1.005, 2));
+        Assert.assertEquals("0.29", format(NumberText.toUnscaled(0.285, 2), 2, (char) 0));
+        try {
+            NumberText.toUnscaled(Double.NaN, 2);
+            Assert.fail("Expected an IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            NumberText.toUnscaled(1e30, 2);
+            Assert.fail("Expected an IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            NumberText.toUnscaled(1, 19);
+            Assert.fail("Expected an IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static String format(long unscaled, int scale, char separator) {
+        StringBuilder buffer = new StringBuilder("x");
+        NumberText.format(unscaled, scale, separator, buffer);
+        Assert.assertEquals('x', buffer.charAt(0));
+        return buffer.substring(1);
+    }
+}
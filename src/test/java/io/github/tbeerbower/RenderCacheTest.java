@@ -0,0 +1,86 @@
+package io.github.tbeerbower;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RenderCacheTest {
+
+    @Test
+    public void renderCache() {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextEffect cyan = new TextEffect(TextEffect.Code.BACKGROUND_CYAN);
+        RenderCache cache = new RenderCache(100);
+        for (TextGrid.HorizontalAlign align : TextGrid.HorizontalAlign.values()) {
+            TextGrid.Builder builder = new TextGrid.Builder(3).setHorizontalAlign(align).setHorizontalCellPadding(1);
+            for (int i = 0; i < 30; ++i) {
+                builder.addCell(i % 4 == 0 ? cyan : null, i % 2 == 0 ? "OK" : red.apply("FAILED"),
+                    "a " + red.apply("b") + " c");
+            }
+            String expected = builder.generate().toString();
+            Assert.assertEquals(expected, builder.setRenderCache(cache).generate().toString());
+        }
+        Assert.assertEquals(15, cache.getMisses());
+        Assert.assertEquals(180 - 15, cache.getHits());
+        Assert.assertEquals(15, cache.size());
+    }
+
+    @Test
+    public void renderCache_evict() {
+        RenderCache cache = new RenderCache(2);
+        TextGrid.Builder builder = new TextGrid.Builder(3).setRenderCache(cache).
+            addCell("one").addCell("two").addCell("one").addCell("three").addCell("one").addCell("two");
+        builder.generate();
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(4, cache.getMisses());
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void renderCache_evictKeepsHotEntry() {
+        RenderCache cache = new RenderCache(4);
+        TextGrid.Builder builder = new TextGrid.Builder(2).setRenderCache(cache);
+        for (int i = 0; i < 50; ++i) {
+            builder.addCell("hot").addCell("cold" + i);
+        }
+        builder.generate();
+
+        Assert.assertEquals(4, cache.size());
+        Assert.assertEquals(51, cache.getMisses());
+        Assert.assertEquals(49, cache.getHits());
+    }
+
+    @Test
+    public void renderCache_writeTo() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        RenderCache cache = new RenderCache(10);
+        TextGrid.Builder builder = new TextGrid.Builder(2);
+        for (int i = 0; i < 8; ++i) {
+            builder.addCell(i % 2 == 0 ? red.apply("\u00e9t\u00e9") : "\u6f22\u5b57");
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        builder.writeTo(expected);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        builder.setRenderCache(cache).writeTo(bytes);
+
+        Assert.assertArrayEquals(expected.toByteArray(), bytes.toByteArray());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(6, cache.getHits());
+    }
+
+    @Test
+    public void renderCache_trackEffects() {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        RenderCache cache = new RenderCache(10);
+        TextGrid.Builder builder = new TextGrid.Builder(2).setTrackEffects(true);
+        for (int i = 0; i < 8; ++i) {
+            builder.addCell(red.apply("OK"));
+        }
+        String expected = builder.generate().toString();
+
+        Assert.assertEquals(expected, builder.setRenderCache(cache).generate().toString());
+        Assert.assertEquals(0, cache.getMisses() + cache.getHits());
+    }
+}
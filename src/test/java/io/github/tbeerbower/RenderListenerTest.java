@@ -0,0 +1,100 @@
+package io.github.tbeerbower;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RenderListenerTest {
+
+    @Test
+    public void renderListener() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        List<RenderMetrics> metrics = new ArrayList<>();
+        TextGrid.Builder builder = new TextGrid.Builder(3).setRenderListener(metrics::add).setRenderCache(new RenderCache(10));
+        for (int i = 0; i < 12; ++i) {
+            builder.addCell(i % 2 == 0 ? red.apply("OK") : "FAILED");
+        }
+        TextGrid grid = builder.generate();
+        String text = grid.toString();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        builder.setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2).writeTo(bytes);
+        grid.show(new PrintStream(new ByteArrayOutputStream()));
+
+        Assert.assertEquals(3, metrics.size());
+        RenderMetrics generate = metrics.get(0);
+        Assert.assertEquals("generate", generate.getOperation());
+        Assert.assertEquals(12, generate.getCells());
+        Assert.assertEquals(text.split("\n").length, generate.getLines());
+        Assert.assertEquals(text.length(), generate.getOutputSize());
+        Assert.assertEquals(12, generate.getEscapeSequences());
+        Assert.assertEquals(2, generate.getCacheMisses());
+        Assert.assertEquals(10, generate.getCacheHits());
+
+        RenderMetrics writeTo = metrics.get(1);
+        Assert.assertEquals("writeTo", writeTo.getOperation());
+        Assert.assertEquals(0, writeTo.getCells());
+        Assert.assertEquals(bytes.size(), writeTo.getOutputSize());
+        Assert.assertTrue(bytes.size() > text.getBytes(StandardCharsets.UTF_8).length);
+        Assert.assertEquals(12, writeTo.getCacheHits());
+
+        RenderMetrics show = metrics.get(2);
+        Assert.assertEquals("show", show.getOperation());
+        Assert.assertEquals(text.length(), show.getOutputSize());
+    }
+
+    @Test
+    public void renderListener_parallel() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        List<RenderMetrics> metrics = new ArrayList<>();
+        TextGrid.Builder builder = new TextGrid.Builder(3).setRenderListener(metrics::add);
+        for (int i = 0; i < 3 * 100; ++i) {
+            builder.addCell(i % 2 == 0 ? red.apply("OK") : "FAILED");
+        }
+        String text = builder.generate().toString();
+        builder.setParallelism(4);
+        builder.generate();
+        builder.renderTo(new StringBuilder());
+
+        Assert.assertEquals(3, metrics.size());
+        for (RenderMetrics render : metrics) {
+            Assert.assertEquals(text.split("\n").length, render.getLines());
+            Assert.assertEquals(text.length(), render.getOutputSize());
+            Assert.assertEquals(300, render.getEscapeSequences());
+        }
+    }
+
+    @Test
+    public void renderEvent() throws Exception {
+        Path file = Files.createTempFile("render", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.github.tbeerbower.Render").withoutThreshold();
+            recording.start();
+            new TextGrid.Builder(2).addCell("a").addCell("b").addCell("c").generate();
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals("io.github.tbeerbower.Render")) {
+                    events.add(event);
+                }
+            }
+            Assert.assertEquals(1, events.size());
+            Assert.assertEquals("generate", events.get(0).getString("operation"));
+            Assert.assertEquals(5, events.get(0).getLong("lines"));
+            Assert.assertEquals(3, events.get(0).getLong("cells"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
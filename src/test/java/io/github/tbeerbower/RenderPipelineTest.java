@@ -0,0 +1,55 @@
+package io.github.tbeerbower;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RenderPipelineTest {
+
+    @Test
+    public void produce_error() throws Exception {
+        RenderPipeline pipeline = new RenderPipeline(100, 3, LineWriter::new, (writer, row) -> {
+            if (row == 50) {
+                throw new StackOverflowError("row " + row);
+            }
+            writer.append('x').endLine();
+        }, null, () -> { });
+        try {
+            pipeline.start(new StringBuilder()).get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected an ExecutionException.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof StackOverflowError);
+            Assert.assertEquals("row 50", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void write_error() throws Exception {
+        RenderPipeline pipeline = new RenderPipeline(100, 3, LineWriter::new,
+            (writer, row) -> writer.append('x').endLine(), null, () -> { });
+        Appendable broken = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                throw new OutOfMemoryError("broken");
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                throw new OutOfMemoryError("broken");
+            }
+
+            @Override
+            public Appendable append(char c) {
+                throw new OutOfMemoryError("broken");
+            }
+        };
+        try {
+            pipeline.start(broken).get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected an ExecutionException.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof OutOfMemoryError);
+        }
+    }
+}
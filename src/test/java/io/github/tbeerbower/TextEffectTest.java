@@ -3,8 +3,10 @@ package io.github.tbeerbower;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 
 public class TextEffectTest {
     @Test
@@ -17,6 +19,36 @@ public class TextEffectTest {
             new HashSet(Arrays.asList(decodedTextEffect.getCodes())));
     }
 
+    @Test
+    public void apply_appendable() throws Exception {
+        TextEffect textEffect = new TextEffect(TextEffect.Code.RED, TextEffect.Code.BACKGROUND_BLACK);
+        StringBuilder out = textEffect.apply(new StringBuilder("> "), "HELLO WORLD!!!!");
+        Assert.assertEquals("> " + textEffect.apply("HELLO WORLD!!!!"), out.toString());
+        Assert.assertEquals("> \u001B[31;40mHELLO WORLD!!!!\u001B[0m", out.toString());
+    }
+
+    @Test
+    public void equals() {
+        Assert.assertEquals(new TextEffect(TextEffect.Code.RED, TextEffect.Code.BOLD),
+            new TextEffect(TextEffect.Code.BOLD, TextEffect.Code.RED));
+        Assert.assertNotEquals(new TextEffect(TextEffect.Code.RED), new TextEffect(TextEffect.Code.RED, TextEffect.Code.BOLD));
+    }
+
+    @Test
+    public void canonicalCodes() {
+        TextEffect blueRed = new TextEffect(TextEffect.Code.BLUE, TextEffect.Code.BOLD, TextEffect.Code.RED,
+            TextEffect.Code.BOLD);
+
+        Assert.assertEquals(new TextEffect(TextEffect.Code.RED, TextEffect.Code.BOLD), blueRed);
+        Assert.assertNotEquals(new TextEffect(TextEffect.Code.RED, TextEffect.Code.BLUE), blueRed);
+        Assert.assertEquals("\u001B[1;31mx\u001B[0m", blueRed.apply("x"));
+        Assert.assertArrayEquals(new TextEffect.Code[]{TextEffect.Code.BOLD, TextEffect.Code.RED}, blueRed.getCodes());
+        Assert.assertEquals(blueRed, TextEffect.decode(blueRed.apply("x")));
+        Assert.assertEquals("\u001B[31mx\u001B[0m", new TextEffect(TextEffect.Code.BLUE).join(TextEffect.Code.RED).apply("x"));
+        Assert.assertEquals("\u001B[32;44mx\u001B[0m", new TextEffect(TextEffect.Code.BACKGROUND_RED, TextEffect.Code.GREEN,
+            TextEffect.Code.BACKGROUND_BLUE).apply("x"));
+    }
+
     @Test
     public void decodeText() {
         TextEffect textEffect = new TextEffect(TextEffect.Code.RED, TextEffect.Code.BACKGROUND_BLACK,
@@ -26,6 +58,28 @@ public class TextEffectTest {
         Assert.assertEquals("HELLO WORLD!!!!", decodedText);
     }
 
+    @Test
+    public void decodeText_segments() {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextEffect bold = new TextEffect(TextEffect.Code.BOLD, TextEffect.Code.BACKGROUND_BLUE);
+        String text = "one " + red.apply("two") + " three " + bold.apply("four") + "\u001B[2Jfive";
+        Assert.assertEquals("one two three four\u001B[2Jfive", TextEffect.decodeText(text));
+        Assert.assertEquals(new TextEffect(TextEffect.Code.RED, TextEffect.Code.BOLD, TextEffect.Code.BACKGROUND_BLUE),
+            TextEffect.decode(text));
+        Assert.assertEquals(0, TextEffect.decode("plain \u001B[99;0m text").getCodes().length);
+    }
+
+    @Test
+    public void decode_recolour() {
+        String text = "\u001B[32;44mA\u001B[31mB\u001B[1;41mC\u001B[0m";
+        List<String> prefixes = new ArrayList<>();
+        TextEffect.decode(text, null, (offset, length, mask) -> prefixes.add(TextEffect.forMask(mask).getPrefix()));
+
+        Assert.assertEquals(Arrays.asList("\u001B[32;44m", "\u001B[31;44m", "\u001B[1;31;41m"), prefixes);
+        Assert.assertEquals(new TextEffect(TextEffect.Code.BOLD, TextEffect.Code.RED, TextEffect.Code.BACKGROUND_RED),
+            TextEffect.decode(text));
+    }
+
     @Test
     public void decode() {
         TextEffect textEffect = new TextEffect(TextEffect.Code.RED, TextEffect.Code.BACKGROUND_BLACK,
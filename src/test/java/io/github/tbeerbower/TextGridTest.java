@@ -1,7 +1,18 @@
 package io.github.tbeerbower;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 
 import org.junit.Assert;
@@ -248,6 +259,427 @@ public class TextGridTest {
         }
     }
 
+    @Test
+    public void renderTo() throws Exception {
+        TextGrid.Builder builder = new TextGrid.Builder(4);
+        for (int i = 0; i < 17; ++i) {
+            builder = builder.addCell(new TextGrid.CellText("Cell" + i));
+        }
+        StringBuilder out = builder.renderTo(new StringBuilder());
+
+        Assert.assertEquals(builder.generate().toString(), out.toString());
+        Assert.assertEquals(NUMBER_GRID.replace(System.lineSeparator(), "\n"), out.toString());
+    }
+
+    @Test
+    public void renderTo_rows() throws Exception {
+        List<TextGrid.Cell[]> rows = new ArrayList<>();
+        for (int i = 0; i < 17; i += 4) {
+            rows.add(IntStream.range(i, Math.min(i + 4, 17)).
+                mapToObj(j -> new TextGrid.Cell(new TextGrid.CellText("Cell" + j))).toArray(TextGrid.Cell[]::new));
+        }
+        String expected = NUMBER_GRID.replace(System.lineSeparator(), "\n");
+
+        Assert.assertEquals(expected, new TextGrid.Builder(4).renderTo(rows, new StringBuilder()).toString());
+        Assert.assertEquals(expected, new TextGrid.Builder(4).renderTo(rows.stream(), 5, new StringBuilder()).toString());
+        Assert.assertEquals(expected,
+            new TextGrid.Builder(4).setCellWidths(6).renderTo(rows.stream(), 0, new StringBuilder()).toString());
+    }
+
+    @Test
+    public void renderTo_rowsKeepsBuilderLayout() throws Exception {
+        TextGrid.Builder builder = new TextGrid.Builder(1).addCell("A very wide cell");
+        String grid = builder.generate().toString();
+        List<TextGrid.Cell[]> rows = Collections.singletonList(
+            new TextGrid.Cell[]{new TextGrid.Cell(new TextGrid.CellText("x"), new TextGrid.CellText("y"))});
+        String expected =
+            "+-+\n" +
+            "|x|\n" +
+            "|y|\n" +
+            "+-+\n";
+
+        Assert.assertEquals(expected, builder.renderTo(rows, new StringBuilder()).toString());
+        Assert.assertEquals(expected, builder.renderTo(rows.stream(), 1, new StringBuilder()).toString());
+        Assert.assertEquals(grid, builder.generate().toString());
+    }
+
+    @Test
+    public void left_hashBorder() {
+        String grid = new TextGrid.Builder(2).setHorizontalAlign(TextGrid.HorizontalAlign.LEFT).
+            setBorderCharSet(TextGrid.Builder.BorderCharSet.HASH).
+            addCell("one", "two", "three").addCell("four").
+            generate().toString();
+
+        Assert.assertEquals(
+            "#############\n" +
+            "#one  #     #\n" +
+            "#two  #four #\n" +
+            "#three#     #\n" +
+            "#############\n", grid);
+    }
+
+    @Test
+    public void cellText_spans() {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextEffect blue = new TextEffect(TextEffect.Code.BLUE);
+        TextGrid.CellText decoded = new TextGrid.CellText("a " + red.apply("b") + " c " + blue.apply("d"));
+        TextGrid.CellText built = new TextGrid.CellText.SpanBuilder().
+            append("a ").append("b", red).append(" c ").append("d", blue).build();
+
+        Assert.assertEquals("a b c d", decoded.getRawText());
+        Assert.assertEquals("a b c d", built.getRawText());
+        String expected = "  a " + red.apply("b") + " c " + blue.apply("d") + "   ";
+        Assert.assertEquals(expected, decoded.getDisplayText(12, TextGrid.HorizontalAlign.CENTER, null, null));
+        Assert.assertEquals(expected, built.getDisplayText(12, TextGrid.HorizontalAlign.CENTER, null, null));
+        Assert.assertEquals("a " + red.apply("b") + " ", built.getDisplayText(4, TextGrid.HorizontalAlign.LEFT, null, null));
+        Assert.assertEquals(red.apply(" b  "),
+            new TextGrid.CellText(red.apply("b")).getDisplayText(4, TextGrid.HorizontalAlign.CENTER, null, null));
+
+
+        TextGrid.CellText recoloured = new TextGrid.CellText("\u001B[32mA\u001B[31mB\u001B[44mC\u001B[0m");
+        String recolouredText = new TextGrid.CellText.SpanBuilder().append("A", new TextEffect(TextEffect.Code.GREEN)).
+            append("B", red).append("C", new TextEffect(TextEffect.Code.RED, TextEffect.Code.BACKGROUND_BLUE)).build().
+            getDisplayText(3, TextGrid.HorizontalAlign.LEFT, null, null);
+        Assert.assertEquals("\u001B[32mA\u001B[0m\u001B[31mB\u001B[0m\u001B[31;44mC\u001B[0m", recolouredText);
+        Assert.assertEquals(recolouredText, recoloured.getDisplayText(3, TextGrid.HorizontalAlign.LEFT, null, null));
+    }
+
+    @Test
+    public void trackEffects() {
+        TextEffect cyan = new TextEffect(TextEffect.Code.BACKGROUND_CYAN);
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextGrid.Builder builder = new TextGrid.Builder(2).setFillEffect(cyan).setHorizontalCellPadding(1).
+            addCell(cyan, "one").addCell(cyan, red.apply("two"));
+        String[] lines = builder.generate().toString().split("\n");
+        String[] trackedLines = builder.setTrackEffects(true).generate().toString().split("\n");
+
+        Assert.assertEquals(lines.length, trackedLines.length);
+        for (int i = 0; i < lines.length; ++i) {
+            Assert.assertEquals(TextEffect.decodeText(lines[i]), TextEffect.decodeText(trackedLines[i]));
+            Assert.assertTrue(trackedLines[i].length() < lines[i].length());
+        }
+        Assert.assertEquals(cyan.apply("+-----+-----+"), trackedLines[0]);
+        Assert.assertEquals("\u001B[46m| one | \u001B[0;31mtwo\u001B[0;46m |\u001B[0m", trackedLines[1]);
+    }
+
+    @Test
+    public void cellStorage_columnar() {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextGrid.Builder[] builders = {new TextGrid.Builder(5, true, true, true), new TextGrid.Builder(5, true, true, true)};
+        for (TextGrid.Builder builder : builders) {
+            builder.setVerticalAlignment(TextGrid.VerticalAlign.BOTTOM).addCell("a", "b").addCell(red, "Status");
+            if (builder == builders[1]) {
+                builder.setCellStorage(TextGrid.Builder.CellStorage.COLUMNAR);
+            }
+            for (int i = 0; i < 5 * 40; ++i) {
+                builder.addCell(i % 3 == 0 ? red : null, i % 2 == 0 ? "OK" : "FAILED", i % 7 == 0 ? "x" : "");
+            }
+            builder.setCell(3, 1, "Replaced").setCell(4, 2, "One", "Two", "Three").
+                setCell(50, 4, new TextGrid.Cell(red, new TextGrid.CellText("Last")));
+        }
+        String expected = builders[0].generate().toString();
+        Assert.assertTrue(expected.contains("Replaced") && expected.contains("Three") && expected.contains("Last"));
+        Assert.assertEquals(expected, builders[1].generate().toString());
+
+        builders[1].setCellStorage(TextGrid.Builder.CellStorage.LIST);
+        Assert.assertEquals(expected, builders[1].generate().toString());
+    }
+
+    @Test
+    public void renderViewport() throws Exception {
+        int[] requests = {0};
+        GridDataProvider provider = new GridDataProvider() {
+            @Override
+            public int getRowCount() {
+                return 1_000_000;
+            }
+
+            @Override
+            public int getColumnCount() {
+                return 10;
+            }
+
+            @Override
+            public TextGrid.Cell getCell(int row, int col) {
+                ++requests[0];
+                return col == 3 ? null : new TextGrid.Cell(new TextGrid.CellText("r" + row + "c" + col));
+            }
+        };
+        TextGrid.Builder builder = new TextGrid.Builder(10).setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2);
+        String viewport = builder.renderViewport(provider, 500_000, 500_003, 2, 5, new StringBuilder()).toString();
+        Assert.assertEquals(9, requests[0]);
+
+        TextGrid.Builder expected = new TextGrid.Builder(3, false, true, true).setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2);
+        for (int row = 500_000; row < 500_003; ++row) {
+            expected.addCell("r" + row + "c2").addCell(new TextGrid.Cell()).addCell("r" + row + "c4");
+        }
+        Assert.assertEquals(expected.generate().toString(), viewport);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void renderViewport_outOfRange() throws Exception {
+        TextGrid.Builder builder = new TextGrid.Builder(2);
+        builder.renderViewport(new GridDataProvider() {
+            @Override
+            public int getRowCount() {
+                return 10;
+            }
+
+            @Override
+            public int getColumnCount() {
+                return 2;
+            }
+
+            @Override
+            public TextGrid.Cell getCell(int row, int col) {
+                return null;
+            }
+        }, 5, 11, 0, 2, new StringBuilder());
+    }
+
+    @Test
+    public void displayWidth() {
+        TextGrid.Builder builder = new TextGrid.Builder(2, false, true, true).setMaxCellWidth(5);
+        builder.addCell("\u4E2D\u6587").addCell("abc").
+            addCell("caf\u00E9\u0301").addCell("\uD83D\uDE00!").
+            addCell("\u4E2D\u6587\u4E2D\u6587").addCell("x");
+        String[] lines = builder.generate().toString().split("\n");
+        for (String line : lines) {
+            Assert.assertEquals(line, lines[0].length(), DisplayWidth.of(line));
+        }
+        Assert.assertEquals("|\u4E2D\u6587 | x |", lines[5]);
+        Assert.assertEquals("|\u4E2D\u6587 |abc|", new TextGrid.Builder(2, false, true, true).setHorizontalAlign(TextGrid.HorizontalAlign.LEFT).
+            setCellWidths(5, 3).addCell("\u4E2D\u6587").addCell("abc").generate().toString().split("\n")[1]);
+    }
+
+    @Test
+    public void wrapMode() {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextGrid.Builder builder = new TextGrid.Builder(2, false, true, true).setMaxCellWidth(10).
+            setWrapMode(TextGrid.Builder.WrapMode.BREAK_WORDS).setHorizontalAlign(TextGrid.HorizontalAlign.LEFT).
+            setVerticalAlignment(TextGrid.VerticalAlign.TOP).
+            addCell("The quick brown fox jumps over", "x").addCell("a supercalifragilistic word " + red.apply("red here"));
+        String expected =
+            "+----------+----------+\n" +
+            "|The quick |a         |\n" +
+            "|brown fox |supercalif|\n" +
+            "|jumps over|ragilistic|\n" +
+            "|x         |word " + red.apply("red") + "  |\n" +
+            "|          |" + red.apply("here") + "      |\n" +
+            "+----------+----------+\n";
+        Assert.assertEquals(expected, builder.generate().toString());
+
+        try (CellTextArena arena = new CellTextArena()) {
+            Assert.assertEquals(expected, builder.setCellArena(arena).generate().toString());
+        }
+    }
+
+    @Test
+    public void targetWidth() {
+        TextGrid.Builder builder = new TextGrid.Builder(4, false, true, true).setMaxCellWidth(40).setHorizontalCellPadding(1).
+            addCell("0123456789").addCell("01234567890123456789").addCell("012345678901234567890123456789").addCell("01234");
+        Assert.assertArrayEquals(new int[]{12, 22, 32, 7}, getColumnWidths(builder.generate()));
+
+        builder.setTargetWidth(50);
+        TextGrid grid = builder.generate();
+        Assert.assertArrayEquals(new int[]{9, 13, 18, 5}, getColumnWidths(grid));
+        for (String line : grid.toString().split("\n")) {
+            Assert.assertEquals(50, line.length());
+        }
+
+        builder.setColumnConstraints(1, 20, 40, 1).setColumnConstraints(2, 1, 25, 0);
+        Assert.assertArrayEquals(new int[]{12, 22, 4, 7}, getColumnWidths(builder.generate()));
+    }
+
+    @Test
+    public void targetWidth_wrapMode() {
+        TextGrid.Builder builder = new TextGrid.Builder(2, true, true, true).setWrapMode(TextGrid.Builder.WrapMode.WORDS).
+            setTargetWidth(20).addCell("Fox").addCell("The quick brown fox jumps over the lazy dog");
+        Assert.assertEquals(
+            "+--+---------------+\n" +
+            "|  |The quick brown|\n" +
+            "|Fo|fox jumps over |\n" +
+            "|  | the lazy dog  |\n" +
+            "+--+---------------+\n", builder.generate().toString());
+    }
+
+    private static int[] getColumnWidths(TextGrid grid) {
+        String border = grid.toString().split("\n")[0];
+        return java.util.Arrays.stream(border.substring(1).split("\\+")).mapToInt(String::length).toArray();
+    }
+
+    @Test
+    public void parallelism() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextGrid.Builder builder = new TextGrid.Builder(7, true, true, true).setHorizontalCellPadding(1);
+        for (int i = 0; i < 7 * 500; ++i) {
+            builder.addCell(i % 3 == 0 ? red : null, "Cell" + i, i % 5 == 0 ? "x" : "");
+        }
+        String expected = builder.generate().toString();
+
+        builder.setParallelism(4);
+        Assert.assertEquals(expected, builder.generate().toString());
+        Assert.assertEquals(expected, builder.renderTo(new StringBuilder()).toString());
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            builder.setRenderPool(pool);
+            Assert.assertEquals(expected, builder.generate().toString());
+            Assert.assertEquals(expected, builder.renderTo(new StringBuilder()).toString());
+            Assert.assertFalse(pool.isShutdown());
+            Assert.assertEquals(expected, builder.setRenderPool(null).generate().toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void numberCells() {
+        String expected =
+            "+----+-------------+\n" +
+            "|Item|1,234,567    |\n" +
+            "+----+-------------+\n" +
+            "|Tax |       12.5  |\n" +
+            "+----+-------------+\n" +
+            "|Rate|       -0.125|\n" +
+            "+----+-------------+\n";
+        try (CellTextArena arena = new CellTextArena()) {
+            for (int storage = 0; storage < 3; ++storage) {
+                TextGrid.Builder builder = new TextGrid.Builder(2, false, true, true).
+                    setNumberAlign(TextGrid.Builder.NumberAlign.DECIMAL).setThousandsSeparator(',').
+                    setRenderCache(new RenderCache(16));
+                if (storage < 2) {
+                    builder.setCellStorage(TextGrid.Builder.CellStorage.values()[storage]);
+                } else {
+                    builder.setCellArena(arena);
+                }
+                builder.addCell("Item").addCell(1234567L).addCell("Tax").addCell(12.5, 1).addCell("Rate").addCell(9.0, 1);
+                builder.setCell(2, 1, -0.125, 3);
+                Assert.assertEquals(expected, builder.generate().toString());
+            }
+        }
+
+        TextGrid.Builder builder = new TextGrid.Builder(2, false, true, false).setWrapMode(TextGrid.Builder.WrapMode.WORDS).
+            addCell("Pi").addCell(3.14159, 2).addCell("Answer").addCell(42L);
+        Assert.assertEquals(
+            "  Pi  3.14\n" +
+            "Answer  42\n", builder.generate().toString());
+    }
+
+    @Test
+    public void numberCells_overflow() {
+        TextGrid.Builder builder = new TextGrid.Builder(1, false, true, true).setMaxCellWidth(5).
+            setNumberAlign(TextGrid.Builder.NumberAlign.DECIMAL).
+            addCell(1234567L).addCell(12345L).addCell(1234L).addCell(123.45, 2).addCell(-12345.5, 1);
+        Assert.assertEquals(
+            "+-----+\n" +
+            "|#####|\n" +
+            "+-----+\n" +
+            "|12345|\n" +
+            "+-----+\n" +
+            "|1234 |\n" +
+            "+-----+\n" +
+            "|#####|\n" +
+            "+-----+\n" +
+            "|#####|\n" +
+            "+-----+\n", builder.generate().toString());
+    }
+
+    @Test
+    public void renderAsync() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextGrid.Builder builder = new TextGrid.Builder(5, true, true, true).setHorizontalCellPadding(1);
+        for (int i = 0; i < 5 * 300; ++i) {
+            builder.addCell(i % 3 == 0 ? red : null, "Cell" + i, i % 7 == 0 ? "x" : "");
+        }
+        String expected = builder.generate().toString();
+
+        for (int parallelism : new int[]{1, 3}) {
+            builder.setParallelism(parallelism);
+            Assert.assertEquals(expected, builder.renderAsync(new StringBuilder()).get(10, TimeUnit.SECONDS).toString());
+        }
+        Assert.assertEquals("", new TextGrid.Builder(3).renderAsync(new StringBuilder()).get(10, TimeUnit.SECONDS).toString());
+
+        Appendable failing = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) throws IOException {
+                throw new IOException("closed");
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) throws IOException {
+                throw new IOException("closed");
+            }
+
+            @Override
+            public Appendable append(char c) throws IOException {
+                throw new IOException("closed");
+            }
+        };
+        try {
+            builder.renderAsync(failing).get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected an ExecutionException.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void writeTo() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextGrid.Builder builder = new TextGrid.Builder(3).setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2);
+        for (int i = 0; i < 3000; ++i) {
+            builder.addCell(i % 7 == 0 ? red : null, "Cell" + i, "\u00e9t\u00e9 \u4e2d \ud83d\ude00");
+        }
+        for (boolean trackEffects : new boolean[]{false, true}) {
+            builder.setTrackEffects(trackEffects);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            builder.writeTo(out);
+            Assert.assertEquals(builder.generate().toString(), out.toString(StandardCharsets.UTF_8.name()));
+        }
+    }
+
+    @Test
+    public void exportTo() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        TextGrid.Builder builder = new TextGrid.Builder(4, true, true, true).
+            setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2);
+        for (int i = 0; i < 4 * 250; ++i) {
+            builder.addCell(i % 3 == 0 ? red : null, "Cell" + i, i % 11 == 0 ? "\u4e2d" : "");
+        }
+        byte[] expected = builder.generate().toString().getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(expected.length, builder.computeOutputSize());
+
+        Path path = Files.createTempFile("text-grid", ".txt");
+        try {
+            for (int parallelism : new int[]{1, 3}) {
+                builder.setParallelism(parallelism).exportTo(path);
+                Assert.assertArrayEquals(expected, Files.readAllBytes(path));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void computeOutputSize() throws Exception {
+        TextEffect red = new TextEffect(TextEffect.Code.RED);
+        for (int config = 0; config < 4; ++config) {
+            TextGrid.Builder builder = new TextGrid.Builder(3, true, true, true).setTrackEffects((config & 1) != 0).
+                setBorderCharSet(TextGrid.Builder.BorderCharSet.XASCII_2).setParallelism(config + 1);
+            if ((config & 2) != 0) {
+                builder.setRenderCache(new RenderCache(8));
+            }
+            for (int i = 0; i < 3 * 40; ++i) {
+                builder.addCell(i % 4 == 0 ? red : null, red.apply("\u00e9" + i % 5), "\ud83d\ude00\u4e2d");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            builder.writeTo(bytes);
+
+            Assert.assertEquals(bytes.size(), builder.computeOutputSize());
+        }
+    }
+
     @Test
     public void topLeft() {
         ByteArrayOutputStream out =
@@ -0,0 +1,44 @@
+package io.github.tbeerbower;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TextWrapTest {
+
+    @Test
+    public void countLines() {
+        Assert.assertEquals(1, TextWrap.countLines("", 5, false));
+        Assert.assertEquals(1, TextWrap.countLines("short", 5, false));
+        Assert.assertEquals(2, TextWrap.countLines("The quick brown fox", 9, false));
+        Assert.assertEquals(2, TextWrap.countLines("a supercalifragilistic", 10, false));
+        Assert.assertEquals(3, TextWrap.countLines("a supercalifragilistic", 10, true));
+    }
+
+    @Test
+    public void lines() {
+        TextWrap.Lines lines = new TextWrap.Lines();
+        String text = "The quick  brown fox";
+        lines.add(0, text, 10, false);
+        lines.add(1, "", 10, false);
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals("The quick", line(text, lines, 0));
+        Assert.assertEquals("brown fox", line(text, lines, 1));
+        Assert.assertEquals(0, lines.getTextLine(1));
+        Assert.assertEquals(1, lines.getTextLine(2));
+        Assert.assertEquals("", line("", lines, 2));
+
+        text = "a supercalifragilistic";
+        lines.clear();
+        lines.add(0, text, 10, false);
+        Assert.assertEquals("supercalifragilistic", line(text, lines, 1));
+        lines.clear();
+        lines.add(0, text, 10, true);
+        Assert.assertEquals(TextWrap.countLines(text, 10, true), lines.size());
+        Assert.assertEquals("supercalif", line(text, lines, 1));
+        Assert.assertEquals("ragilistic", line(text, lines, 2));
+    }
+
+    private static String line(String text, TextWrap.Lines lines, int line) {
+        return text.substring(lines.getStart(line), lines.getEnd(line));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower.benchmarks;
+
+import io.github.tbeerbower.TextEffect;
+import io.github.tbeerbower.TextGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building, generating and printing grids.  The parameters default to one representative grid, with and
+ * without effects, so a plain run takes a couple of minutes.  Cover more shapes and settings with {@code -p}, e.g.
+ * {@code -p rows=100,10000 -p columns=4,16 -p border=true,false -p borderCharSet=BASIC,XASCII_2 -p padding=0,1}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GridBenchmark {
+
+    private static final TextEffect FILL_EFFECT = new TextEffect(TextEffect.Code.BACKGROUND_BLUE, TextEffect.Code.WHITE);
+    private static final TextEffect TEXT_EFFECT = new TextEffect(TextEffect.Code.YELLOW, TextEffect.Code.BOLD);
+
+    @Param({"1000"})
+    public int rows;
+
+    @Param({"8"})
+    public int columns;
+
+    @Param({"true"})
+    public boolean border;
+
+    @Param({"BASIC"})
+    public TextGrid.Builder.BorderCharSet borderCharSet;
+
+    @Param({"false", "true"})
+    public boolean effects;
+
+    @Param({"1"})
+    public int padding;
+
+    private String[][] values;
+    private TextGrid.Builder builder;
+    private TextGrid grid;
+    private PrintStream nullStream;
+
+    @Setup
+    public void setUp() {
+        values = new String[rows][columns];
+        for (int row = 0; row < rows; ++row) {
+            for (int col = 0; col < columns; ++col) {
+                String value = col == 0 ? "Row " + row : Integer.toString(row * 31 + col * 17);
+                values[row][col] = effects && col % 2 == 1 ? TEXT_EFFECT.apply(value) : value;
+            }
+        }
+        builder = fill(newBuilder());
+        grid = builder.generate();
+        nullStream = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public TextGrid.Builder addCell() {
+        return fill(newBuilder());
+    }
+
+    @Benchmark
+    public TextGrid.Builder setCell() {
+        TextGrid.Builder builder = newBuilder();
+        for (int row = rows - 1; row >= 0; --row) {
+            for (int col = columns - 1; col >= 0; --col) {
+                builder.setCell(row, col, values[row][col]);
+            }
+        }
+        return builder;
+    }
+
+    @Benchmark
+    public TextGrid generate() {
+        return builder.generate();
+    }
+
+    @Benchmark
+    public String generateToString() {
+        return builder.generate().toString();
+    }
+
+    @Benchmark
+    public String toStringOnly() {
+        return grid.toString();
+    }
+
+    @Benchmark
+    public void show() {
+        grid.show(nullStream);
+    }
+
+    private TextGrid.Builder newBuilder() {
+        return new TextGrid.Builder(columns, border).setBorderCharSet(borderCharSet).
+            setHorizontalCellPadding(padding).setVerticalCellPadding(padding).
+            setFillEffect(effects ? FILL_EFFECT : null);
+    }
+
+    private TextGrid.Builder fill(TextGrid.Builder builder) {
+        for (String[] row : values) {
+            for (String value : row) {
+                builder.addCell(value);
+            }
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower.benchmarks;
+
+import io.github.tbeerbower.TextEffect;
+import io.github.tbeerbower.TextGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding text effects and constructing cell text, with and without effects.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextEffectBenchmark {
+
+    private static final String TEXT = "Inconsequential text of a typical cell";
+
+    @Param({"false", "true"})
+    public boolean effects;
+
+    private TextEffect effect;
+    private String text;
+    private StringBuilder out;
+
+    @Setup
+    public void setUp() {
+        effect = effects ? new TextEffect(TextEffect.Code.RED, TextEffect.Code.BACKGROUND_BLACK, TextEffect.Code.BOLD) :
+            new TextEffect();
+        text = effect.apply(TEXT);
+        out = new StringBuilder();
+    }
+
+    @Benchmark
+    public String apply() {
+        return effect.apply(TEXT);
+    }
+
+    @Benchmark
+    public StringBuilder applyAppendable() throws IOException {
+        out.setLength(0);
+        return effect.apply(out, TEXT);
+    }
+
+    @Benchmark
+    public TextEffect decode() {
+        return TextEffect.decode(text);
+    }
+
+    @Benchmark
+    public String decodeText() {
+        return TextEffect.decodeText(text);
+    }
+
+    @Benchmark
+    public TextGrid.CellText cellText() {
+        return new TextGrid.CellText(text);
+    }
+
+    @Benchmark
+    public TextGrid.CellText cellTextWithEffect() {
+        return new TextGrid.CellText(TEXT, effect);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2022-2023 Tom Beerbower
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.tbeerbower.benchmarks;
+
+import io.github.tbeerbower.TextEffect;
+import io.github.tbeerbower.TextGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the escape sequence scanner used by {@link TextEffect#decode(String)} and {@link TextEffect#decodeText(String)}
+ * with the regular expressions they replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextEffectDecodeBenchmark {
+
+    private static final Pattern DECODE_EFFECTS_PATTERN = Pattern.compile("\\\u001B\\[([\\d;]+)m");
+    private static final Pattern DECODE_TEXT_PATTERN = Pattern.compile("\\\u001B\\[([\\d;]+)m(.*)\\\u001B\\[([\\d;]+)m");
+    private static final Map<String, TextEffect.Code> codeMap = new HashMap<>();
+    static {
+        for (TextEffect.Code code : TextEffect.Code.values()) {
+            codeMap.put(code.getCode(), code);
+        }
+    }
+
+    @Param({"plain", "colored", "segments"})
+    public String input;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        TextEffect red = new TextEffect(TextEffect.Code.RED, TextEffect.Code.BACKGROUND_BLACK, TextEffect.Code.BOLD);
+        TextEffect blue = new TextEffect(TextEffect.Code.BLUE, TextEffect.Code.UNDERLINE);
+        switch (input) {
+            case "plain":
+                text = "Inconsequential text of a typical cell";
+                break;
+            case "colored":
+                text = red.apply("Inconsequential text of a typical cell");
+                break;
+            default:
+                text = red.apply("Inconsequential") + " text of " + blue.apply("a typical") + " cell";
+        }
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        blackhole.consume(TextEffect.decode(text));
+        blackhole.consume(TextEffect.decodeText(text));
+    }
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        blackhole.consume(regexDecode(text));
+        blackhole.consume(regexDecodeText(text));
+    }
+
+    @Benchmark
+    public TextGrid.CellText cellText() {
+        return new TextGrid.CellText(text);
+    }
+
+    private static TextEffect regexDecode(String text) {
+        TextEffect textEffect = new TextEffect();
+        Matcher matcher = DECODE_EFFECTS_PATTERN.matcher(text);
+        while (matcher.find()) {
+            String[] codes = matcher.group(1).split(";");
+            textEffect = textEffect.join(
+                Arrays.stream(codes).filter(code -> codeMap.get(code) != TextEffect.Code.RESET).
+                    map(code -> codeMap.get(code)).collect(Collectors.toList()).toArray(new TextEffect.Code[]{}));
+        }
+        return textEffect;
+    }
+
+    private static String regexDecodeText(String text) {
+        Matcher matcher = DECODE_TEXT_PATTERN.matcher(text);
+        if (matcher.find()) {
+            return matcher.group(2);
+        }
+        return text;
+    }
+}